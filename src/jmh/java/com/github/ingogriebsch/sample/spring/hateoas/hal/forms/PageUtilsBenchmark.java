@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toPage;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class PageUtilsBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "100000", "10000000" })
+    private int size;
+
+    private List<String> list;
+    private IndexedStore<String> store;
+    private Pageable lastPage;
+
+    @Setup
+    public void setup() {
+        list = newArrayListWithCapacity(size);
+        store = new IndexedStore<>();
+        for (int i = 0; i < size; i++) {
+            list.add("Entity " + i);
+        }
+        store.putAll(list, entity -> Long.parseLong(entity.substring("Entity ".length())));
+
+        lastPage = PageRequest.of((size - 1) / PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<String> toPageOfList() {
+        return toPage(list, lastPage);
+    }
+
+    @Benchmark
+    public Page<String> toPageOfStore() {
+        return toPage(store, lastPage);
+    }
+
+    @Benchmark
+    public Page<String> toPageOfStoreDescending() {
+        return toPage(store, DESC, lastPage);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class InboxServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final InboxInput INPUT = new InboxInput("Inbox", "Description");
+
+    @Param({ "1000", "100000", "10000000" })
+    private int size;
+
+    private InboxService inboxService;
+    private Pageable middlePage;
+    private Pageable middlePageSortedByName;
+
+    @Setup
+    public void setup() {
+        inboxService = new InboxService();
+        for (int i = 0; i < size; i++) {
+            inboxService.insert(new InboxInput("Inbox " + i, "Description " + i));
+        }
+
+        int page = size / PAGE_SIZE / 2;
+        middlePage = PageRequest.of(page, PAGE_SIZE);
+        middlePageSortedByName = PageRequest.of(page, PAGE_SIZE, ASC, InboxService.SORT_NAME);
+    }
+
+    @Benchmark
+    public Inbox insert() {
+        return inboxService.insert(INPUT);
+    }
+
+    @Benchmark
+    public Optional<Inbox> findOne() {
+        return inboxService.findOne(ThreadLocalRandom.current().nextLong(1, size + 1));
+    }
+
+    @Benchmark
+    public Page<Inbox> findAll() {
+        return inboxService.findAll(middlePage);
+    }
+
+    @Benchmark
+    public Page<Inbox> findAllSortedByName() {
+        return inboxService.findAll(middlePageSortedByName);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Application;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.TimedHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class MessageModelAssemblerBenchmark {
+
+    private static final Long INBOX_ID = 1L;
+
+    @Param({ "20", "200", "2000" })
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private MessageModelAssembler assembler;
+    private ObjectMapper objectMapper;
+    private MessageProjection message;
+    private Page<MessageProjection> page;
+
+    // Renders through the object mapper the application registers for HAL-FORMS, including the template and streaming
+    // modules, so the numbers match what a request pays for serialization.
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class)
+            .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=warn").run();
+        assembler = context.getBean(MessageModelAssembler.class);
+        objectMapper = halFormsObjectMapper(context.getBean(RequestMappingHandlerAdapter.class));
+
+        List<MessageProjection> content = newArrayListWithCapacity(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            content.add(new MessageProjection(INBOX_ID, id, "Message " + id, "Content of message " + id));
+        }
+        message = content.get(0);
+        page = new PageImpl<>(content, PageRequest.of(1, pageSize), 10L * pageSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] toModel() throws Exception {
+        return objectMapper.writeValueAsBytes(assembler.toModel(message));
+    }
+
+    @Benchmark
+    public byte[] toPagedModel() throws Exception {
+        return objectMapper.writeValueAsBytes(assembler.toPagedModel(INBOX_ID, page));
+    }
+
+    @Benchmark
+    public byte[] toStreamingModel() throws Exception {
+        return objectMapper.writeValueAsBytes(assembler.toStreamingModel(INBOX_ID, page));
+    }
+
+    private static ObjectMapper halFormsObjectMapper(RequestMappingHandlerAdapter adapter) {
+        for (HttpMessageConverter<?> candidate : adapter.getMessageConverters()) {
+            HttpMessageConverter<?> converter = candidate instanceof TimedHttpMessageConverter
+                ? ((TimedHttpMessageConverter) candidate).getDelegate() : candidate;
+            if (converter instanceof AbstractJackson2HttpMessageConverter
+                && converter.getSupportedMediaTypes().contains(HAL_FORMS_JSON)) {
+                return ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper();
+            }
+        }
+        throw new IllegalStateException("No message converter registered for " + HAL_FORMS_JSON + "!");
+    }
+
+}
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+public class MessageServiceBenchmark {
+
+    private static final Long INBOX_ID = 1L;
+    private static final int BATCH_SIZE = 1000;
+    private static final int PAGE_SIZE = 20;
+    private static final MessageInput INPUT = new MessageInput("Message", "Content");
+
+    @Param({ "1000", "100000", "10000000" })
+    private int size;
+
+    private MessageService messageService;
+    private Pageable middlePage;
+    private Pageable middlePageSortedByTitle;
+
+    @Setup
+    public void setup() {
+        messageService = new MessageService();
+        for (int inserted = 0; inserted < size;) {
+            List<MessageInput> batch = newArrayListWithCapacity(BATCH_SIZE);
+            for (int i = min(BATCH_SIZE, size - inserted); i > 0; i--, inserted++) {
+                batch.add(new MessageInput("Message " + inserted, "Content of message " + inserted));
+            }
+            messageService.insertAll(INBOX_ID, batch);
+        }
+
+        int page = size / PAGE_SIZE / 2;
+        middlePage = PageRequest.of(page, PAGE_SIZE);
+        middlePageSortedByTitle = PageRequest.of(page, PAGE_SIZE, ASC, MessageService.SORT_TITLE);
+    }
+
+    @Benchmark
+    public Message insert() {
+        return messageService.insert(INBOX_ID, INPUT);
+    }
+
+    @Benchmark
+    public Optional<Message> findOne() {
+        return messageService.findOne(INBOX_ID, ThreadLocalRandom.current().nextLong(1, size + 1));
+    }
+
+    @Benchmark
+    public Page<Message> findAll() {
+        return messageService.findAll(INBOX_ID, middlePage);
+    }
+
+    @Benchmark
+    public Page<Message> findAllSortedByTitle() {
+        return messageService.findAll(INBOX_ID, middlePageSortedByTitle);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.stream;
+import static java.util.Locale.ROOT;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Workload.Request;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Workload.Response;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.Inbox;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.Message;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+// Starts the application on a random port, seeds it through the startup properties and replays a weighted mix of reads and
+// writes against the inbox and message endpoints. Exits with a non-zero status if a request failed or a latency objective
+// was missed. All settings can be passed as arguments, e.g. --startup.messages-per-inbox=100000 --loadtest.threads=16.
+@Slf4j
+public class LoadTest {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int FIXTURE_PAGE_SIZE = 10_000;
+
+    private final LoadTestProperties properties;
+    private final Workload workload;
+    private final int[] cumulativeWeights;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    LoadTest(@NonNull LoadTestProperties properties, @NonNull Workload workload) {
+        this.properties = properties;
+        this.workload = workload;
+        this.cumulativeWeights = new int[Operation.values().length];
+
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += properties.weightOf(operation);
+            cumulativeWeights[operation.ordinal()] = total;
+            recorders.put(operation, new Recorder(SIGNIFICANT_DIGITS));
+            errors.put(operation, new LongAdder());
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The operation mix must contain at least one operation!");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Devtools would otherwise relaunch the harness in a restart class loader.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+            .properties("server.port=0", "startup.inboxes=10", "startup.messages-per-inbox=10000").run(args);
+
+        boolean passed;
+        try {
+            LoadTestProperties properties = Binder.get(context.getEnvironment()).bind("loadtest", LoadTestProperties.class)
+                .orElseGet(LoadTestProperties::new);
+            // Keep one persistent connection per worker instead of the default five.
+            System.setProperty("http.maxConnections", String.valueOf(properties.getThreads()));
+            passed = new LoadTest(properties, workload(context, properties)).run();
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run() throws InterruptedException {
+        ExecutorService executor = newFixedThreadPool(properties.getThreads());
+        for (int i = 0; i < properties.getThreads(); i++) {
+            executor.execute(this::work);
+        }
+
+        log.info("Warming up for {}.", properties.getWarmup());
+        sleep(properties.getWarmup());
+        recorders.values().forEach(Recorder::reset);
+        errors.values().forEach(LongAdder::reset);
+
+        log.info("Measuring for {} with {} threads.", properties.getDuration(), properties.getThreads());
+        long start = nanoTime();
+        sleep(properties.getDuration());
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+        Map<Operation, Long> failures = new EnumMap<>(Operation.class);
+        errors.forEach((operation, adder) -> failures.put(operation, adder.sum()));
+        long elapsed = nanoTime() - start;
+
+        running.set(false);
+        executor.shutdown();
+        executor.awaitTermination(1, SECONDS);
+        return report(histograms, failures, elapsed / 1e9);
+    }
+
+    private void work() {
+        Random random = ThreadLocalRandom.current();
+        long interval = properties.getRate() > 0 ? SECONDS.toNanos(properties.getThreads()) / properties.getRate() : 0;
+        long intended = nanoTime();
+
+        while (running.get()) {
+            if (interval > 0) {
+                intended += interval;
+                long wait = intended - nanoTime();
+                if (wait > 0) {
+                    parkNanos(wait);
+                }
+            }
+
+            Operation operation = pick(random);
+            try {
+                Request request = workload.next(operation, random);
+                if (request == null) {
+                    continue;
+                }
+
+                // A paced request is measured from its intended start, so a stalled server is not hidden by workers which
+                // fell behind their schedule.
+                long start = interval > 0 ? intended : nanoTime();
+                Response response = workload.exchange(request);
+                recorders.get(operation).recordValue(nanoTime() - start);
+
+                if (response.isSuccessful()) {
+                    workload.completed(request, response);
+                } else {
+                    log.debug("Request '{} {}' failed with status {}.", request.getMethod(), request.getPath(),
+                        response.getStatus());
+                    errors.get(operation).increment();
+                }
+            } catch (IOException e) {
+                log.debug("Operation '{}' failed.", operation, e);
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private Operation pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (Operation operation : Operation.values()) {
+            if (value < cumulativeWeights[operation.ordinal()]) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("No operation matches weight " + value + "!");
+    }
+
+    private boolean report(Map<Operation, Histogram> histograms, Map<Operation, Long> failures, double seconds) {
+        Histogram reads = new Histogram(SIGNIFICANT_DIGITS);
+        Histogram writes = new Histogram(SIGNIFICANT_DIGITS);
+        long failed = 0;
+        boolean passed = true;
+
+        log.info(format(ROOT, "%-20s %10s %10s %10s %10s %10s %10s %8s", "operation", "count", "ops/s", "p50 ms", "p99 ms",
+            "p999 ms", "max ms", "errors"));
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            long errors = failures.get(operation);
+            if (histogram.getTotalCount() == 0 && errors == 0) {
+                continue;
+            }
+
+            (operation.isWrite() ? writes : reads).add(histogram);
+            failed += errors;
+            log.info(line(operation.name().toLowerCase(ROOT), histogram, seconds, errors));
+            passed &= meetsObjectives(operation.name().toLowerCase(ROOT), histogram);
+        }
+
+        Histogram total = reads.copy();
+        total.add(writes);
+        log.info(line("reads", reads, seconds, -1));
+        log.info(line("writes", writes, seconds, -1));
+        log.info(line("total", total, seconds, failed));
+
+        if (failed > 0) {
+            log.warn("{} requests failed.", failed);
+        }
+        return passed && failed == 0;
+    }
+
+    private boolean meetsObjectives(String name, Histogram histogram) {
+        LoadTestProperties.Slo slo = properties.getSlo();
+        return meetsObjective(name, histogram, "p50", 50, slo.getP50()) & meetsObjective(name, histogram, "p99", 99, slo.getP99())
+            & meetsObjective(name, histogram, "p999", 99.9, slo.getP999());
+    }
+
+    private static boolean meetsObjective(String name, Histogram histogram, String label, double percentile, Duration objective) {
+        if (objective == null || histogram.getTotalCount() == 0) {
+            return true;
+        }
+
+        long value = histogram.getValueAtPercentile(percentile);
+        if (value <= objective.toNanos()) {
+            return true;
+        }
+        log.warn("Operation '{}' missed its {} objective of {} ms with {} ms.", name, label, objective.toMillis(),
+            format(ROOT, "%.3f", millis(value)));
+        return false;
+    }
+
+    private static String line(String name, Histogram histogram, double seconds, long errors) {
+        return format(ROOT, "%-20s %10d %10.1f %10.3f %10.3f %10.3f %10.3f %8s", name, histogram.getTotalCount(),
+            histogram.getTotalCount() / seconds, millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMaxValue()), errors < 0 ? "" : String.valueOf(errors));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        NANOSECONDS.sleep(duration.toNanos());
+    }
+
+    private static Workload workload(ConfigurableApplicationContext context, LoadTestProperties properties) {
+        InboxService inboxService = context.getBean(InboxService.class);
+        MessageService messageService = context.getBean(MessageService.class);
+
+        long[] inboxIds = ids(inboxService::findAll, Inbox::getId);
+        if (inboxIds.length == 0) {
+            throw new IllegalStateException("No inboxes are available to run the workload against!");
+        }
+
+        long[][] messageIds = new long[inboxIds.length][];
+        for (int i = 0; i < inboxIds.length; i++) {
+            Long inboxId = inboxIds[i];
+            messageIds[i] = ids(p -> messageService.findAll(inboxId, p), Message::getId);
+        }
+        log.info("Running against {} inboxes with {} messages.", inboxIds.length,
+            stream(messageIds).mapToLong(m -> m.length).sum());
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getRequiredProperty("local.server.port");
+        return new Workload(baseUrl, properties.getPageSize(), inboxIds, messageIds);
+    }
+
+    private static <T> long[] ids(Function<Pageable, Page<T>> findAll, ToLongFunction<T> idOf) {
+        LongStream.Builder ids = LongStream.builder();
+        Page<T> page = findAll.apply(PageRequest.of(0, FIXTURE_PAGE_SIZE));
+        page.forEach(e -> ids.add(idOf.applyAsLong(e)));
+        while (page.hasNext()) {
+            page = findAll.apply(page.nextPageable());
+            page.forEach(e -> ids.add(idOf.applyAsLong(e)));
+        }
+        return ids.build().toArray();
+    }
+
+}
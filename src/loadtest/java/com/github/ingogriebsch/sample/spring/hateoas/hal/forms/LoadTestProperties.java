@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class LoadTestProperties {
+
+    private int threads = 8;
+    private Duration warmup = ofSeconds(10);
+    private Duration duration = ofSeconds(30);
+    // Requests per second over all threads. Zero runs a closed loop, otherwise latencies are corrected for coordinated
+    // omission against the expected interval.
+    private int rate;
+    private int pageSize = 20;
+    // Overrides the default weight of an operation, a weight of zero drops it from the mix.
+    private Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private Slo slo = new Slo();
+
+    public int weightOf(Operation operation) {
+        return mix.getOrDefault(operation, operation.getWeight());
+    }
+
+    @Data
+    public static class Slo {
+
+        private Duration p50;
+        private Duration p99 = ofMillis(250);
+        private Duration p999 = ofSeconds(1);
+
+    }
+
+}
@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum Operation {
+
+        FIND_INBOXES(8, false), FIND_INBOX(8, false), FIND_MESSAGES(14, false), FIND_MESSAGES_AFTER(8, false),
+        FIND_MESSAGES_BY_ID(6, false), FIND_MESSAGE(20, false), SEARCH_MESSAGES(8, false), INSERT_INBOX(2, true),
+        UPDATE_INBOX(2, true), DELETE_INBOX(1, true), INSERT_MESSAGE(10, true), INSERT_MESSAGES(3, true), UPDATE_MESSAGE(6, true),
+        DELETE_MESSAGE(4, true);
+
+    private final int weight;
+    private final boolean write;
+
+}
@@ -0,0 +1,209 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.Math.max;
+import static java.util.stream.Collectors.joining;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.io.ByteStreams.toByteArray;
+import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON_VALUE;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxInput;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageInput;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+// Builds the requests of the mixed workload against the seeded inboxes and messages. Reads and updates only touch seeded data,
+// deletes only touch inboxes and messages inserted by the workload itself, so no request is expected to fail.
+@RequiredArgsConstructor
+class Workload {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int BATCH_SIZE = 20;
+
+    @NonNull
+    private final String baseUrl;
+    private final int pageSize;
+    @NonNull
+    private final long[] inboxIds;
+    @NonNull
+    private final long[][] messageIds;
+    private final Queue<long[]> inserted = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> insertedInboxes = new ConcurrentLinkedQueue<>();
+
+    Request next(Operation operation, Random random) throws IOException {
+        int inbox = random.nextInt(inboxIds.length);
+        long inboxId = inboxIds[inbox];
+        long[] ids = messageIds[inbox];
+        String messages = "/api/inboxes/" + inboxId + "/messages";
+
+        switch (operation) {
+            case FIND_INBOXES:
+                return get(operation, "/api/inboxes?page=" + random.nextInt(pages(inboxIds.length)) + "&size=" + pageSize);
+            case FIND_INBOX:
+                return get(operation, "/api/inboxes/" + inboxId);
+            case INSERT_INBOX:
+                return new Request(operation, "POST", "/api/inboxes", inboxBody(random), null);
+            case UPDATE_INBOX:
+                return new Request(operation, "PUT", "/api/inboxes/" + inboxId, inboxBody(random), inboxId);
+            case DELETE_INBOX:
+                Long insertedInboxId = insertedInboxes.poll();
+                return insertedInboxId == null ? null
+                    : new Request(operation, "DELETE", "/api/inboxes/" + insertedInboxId, null, insertedInboxId);
+            case FIND_MESSAGES:
+                return get(operation, messages + "?page=" + random.nextInt(pages(ids.length)) + "&size=" + pageSize);
+            case FIND_MESSAGES_AFTER:
+                return ids.length == 0 ? null : get(operation,
+                    messages + "?after=" + Cursors.encode(ids[random.nextInt(ids.length)]) + "&size=" + pageSize);
+            case FIND_MESSAGES_BY_ID:
+                return ids.length == 0 ? null : get(operation, messages + "?ids="
+                    + random.longs(pageSize, 0, ids.length).mapToObj(i -> Long.toString(ids[(int) i])).collect(joining(",")));
+            case FIND_MESSAGE:
+                return ids.length == 0 ? null : get(operation, messages + "/" + ids[random.nextInt(ids.length)]);
+            case SEARCH_MESSAGES:
+                return get(operation, messages + "/search?q=" + (random.nextInt(max(ids.length, 1)) + 1) + "&size=" + pageSize);
+            case INSERT_MESSAGE:
+                return new Request(operation, "POST", messages, body(random), inboxId);
+            case INSERT_MESSAGES:
+                return new Request(operation, "POST", messages + "/batch", batchBody(random), inboxId);
+            case UPDATE_MESSAGE:
+                return ids.length == 0 ? null
+                    : new Request(operation, "PUT", messages + "/" + ids[random.nextInt(ids.length)], body(random), inboxId);
+            case DELETE_MESSAGE:
+                long[] message = inserted.poll();
+                return message == null ? null : new Request(operation, "DELETE",
+                    "/api/inboxes/" + message[0] + "/messages/" + message[1], null, message[0]);
+            default:
+                throw new IllegalArgumentException("Operation '" + operation + "' is not supported!");
+        }
+    }
+
+    Response exchange(Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+        connection.setRequestMethod(request.getMethod());
+        connection.setRequestProperty(ACCEPT, HAL_FORMS_JSON_VALUE);
+        if (request.getBody() != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty(CONTENT_TYPE, APPLICATION_JSON_VALUE);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(request.getBody());
+            }
+        }
+
+        int status = connection.getResponseCode();
+        // The body is always read to its end so the connection is returned to the keep-alive cache.
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Response(status, in != null ? toByteArray(in) : new byte[0]);
+        }
+    }
+
+    void completed(Request request, Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            return;
+        }
+
+        switch (request.getOperation()) {
+            case INSERT_INBOX:
+                insertedInboxes.add(OBJECT_MAPPER.readTree(response.getBody()).get("id").asLong());
+                break;
+            case INSERT_MESSAGE:
+                inserted.add(new long[] { request.getInboxId(), OBJECT_MAPPER.readTree(response.getBody()).get("id").asLong() });
+                break;
+            case INSERT_MESSAGES:
+                for (JsonNode id : OBJECT_MAPPER.readTree(response.getBody()).get("ids")) {
+                    inserted.add(new long[] { request.getInboxId(), id.asLong() });
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int pages(int elements) {
+        return max((elements + pageSize - 1) / pageSize, 1);
+    }
+
+    private static Request get(Operation operation, String path) {
+        return new Request(operation, "GET", path, null, null);
+    }
+
+    private static byte[] body(Random random) throws IOException {
+        return OBJECT_MAPPER.writeValueAsBytes(messageInput(random));
+    }
+
+    private static byte[] batchBody(Random random) throws IOException {
+        List<MessageInput> messageInputs = newArrayListWithCapacity(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            messageInputs.add(messageInput(random));
+        }
+        return OBJECT_MAPPER.writeValueAsBytes(messageInputs);
+    }
+
+    private static byte[] inboxBody(Random random) throws IOException {
+        int id = random.nextInt(1_000_000);
+        return OBJECT_MAPPER.writeValueAsBytes(new InboxInput("Load " + id, "Inbox " + id));
+    }
+
+    private static MessageInput messageInput(Random random) {
+        int id = random.nextInt(1_000_000);
+        return new MessageInput("Load " + id, "L" + id + " " + Long.toHexString(random.nextLong()));
+    }
+
+    @Value
+    static class Request {
+
+        Operation operation;
+        String method;
+        String path;
+        byte[] body;
+        Long inboxId;
+
+    }
+
+    @Value
+    static class Response {
+
+        int status;
+        byte[] body;
+
+        boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static lombok.AccessLevel.PRIVATE;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+import java.util.Base64;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor(access = PRIVATE)
+public final class Cursors {
+
+    private static final String PREFIX = "id:";
+
+    public static String encode(@NonNull Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((PREFIX + id).getBytes(UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        if (isEmpty(cursor)) {
+            return null;
+        }
+
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+        if (!decoded.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Cursor '" + cursor + "' is not valid!");
+        }
+        return Long.valueOf(decoded.substring(PREFIX.length()));
+    }
+
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+
+import java.util.function.Supplier;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+@RequiredArgsConstructor(access = PRIVATE)
+public final class EntityTags {
+
+    private static final String ANY = "*";
+
+    public static String of(@NonNull Versioned entity) {
+        return quote(entity.getId() + "." + entity.getVersion());
+    }
+
+    public static String of(@NonNull Page<? extends Versioned> page) {
+        Hasher hasher = Hashing.murmur3_128().newHasher().putLong(page.getTotalElements());
+        for (Versioned entity : page) {
+            hasher.putLong(entity.getId()).putLong(entity.getVersion());
+        }
+        return quote(hasher.hash().toString());
+    }
+
+    public static Long versionOf(String eTag, @NonNull Long id) {
+        if (eTag == null || ANY.equals(eTag.trim())) {
+            return null;
+        }
+
+        String value = eTag.trim();
+        String prefix = "\"" + id + ".";
+        if (!value.startsWith(prefix) || !value.endsWith("\"")) {
+            throw new IllegalArgumentException("Entity tag '" + eTag + "' does not denote entity '" + id + "'!");
+        }
+        return Long.valueOf(value.substring(prefix.length(), value.length() - 1));
+    }
+
+    public static <T> ResponseEntity<T> okUnlessNotModified(@NonNull WebRequest request, @NonNull String eTag,
+        @NonNull Supplier<T> body) {
+        // The tag only denotes the state of the entity, so caches have to tell the negotiated representations apart.
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).varyBy(ACCEPT).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).varyBy(ACCEPT).body(body.get());
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.ContainerSerializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import lombok.NonNull;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.hal.forms.HalFormsDocument;
+
+public class HalFormsTemplateModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    public HalFormsTemplateModule(@NonNull HalFormsTemplateRegistry halFormsTemplateRegistry) {
+        super("hal-forms-template-module");
+        setMixInAnnotation(RepresentationModel.class, RepresentationModelMixin.class);
+        addSerializer(new RepresentationModelSerializer(halFormsTemplateRegistry, null));
+    }
+
+    abstract static class RepresentationModelMixin extends org.springframework.hateoas.mediatype.hal.RepresentationModelMixin {
+    }
+
+    static class RepresentationModelSerializer extends ContainerSerializer<RepresentationModel<?>>
+        implements ContextualSerializer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final HalFormsTemplateRegistry halFormsTemplateRegistry;
+        private final BeanProperty property;
+
+        RepresentationModelSerializer(HalFormsTemplateRegistry halFormsTemplateRegistry, BeanProperty property) {
+            super(RepresentationModel.class, false);
+            this.halFormsTemplateRegistry = halFormsTemplateRegistry;
+            this.property = property;
+        }
+
+        @Override
+        public void serialize(RepresentationModel<?> value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            HalFormsDocument<?> document = HalFormsDocument.forRepresentationModel(value).withLinks(value.getLinks())
+                .withTemplates(halFormsTemplateRegistry.findTemplates(value));
+            provider.findValueSerializer(HalFormsDocument.class, property).serialize(document, gen, provider);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property) {
+            return new RepresentationModelSerializer(halFormsTemplateRegistry, property);
+        }
+
+        @Override
+        public JavaType getContentType() {
+            return null;
+        }
+
+        @Override
+        public JsonSerializer<?> getContentSerializer() {
+            return null;
+        }
+
+        @Override
+        public boolean hasSingleElement(RepresentationModel<?> value) {
+            return false;
+        }
+
+        @Override
+        protected ContainerSerializer<?> _withValueTypeSerializer(TypeSerializer vts) {
+            return null;
+        }
+    }
+
+}
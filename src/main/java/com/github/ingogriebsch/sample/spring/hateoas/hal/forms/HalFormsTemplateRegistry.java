@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.String.format;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
+import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+import static org.springframework.hateoas.mediatype.PropertyUtils.getExposedProperties;
+import static org.springframework.hateoas.mediatype.hal.forms.HalFormsTemplate.DEFAULT_KEY;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.PATCH;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpMethod.PUT;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.hateoas.Affordance;
+import org.springframework.hateoas.AffordanceModel;
+import org.springframework.hateoas.AffordanceModel.InputPayloadMetadata;
+import org.springframework.hateoas.AffordanceModel.PropertyMetadata;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.forms.HalFormsProperty;
+import org.springframework.hateoas.mediatype.hal.forms.HalFormsTemplate;
+import org.springframework.http.HttpMethod;
+
+@RequiredArgsConstructor
+public class HalFormsTemplateRegistry {
+
+    private static final Set<HttpMethod> ENTITY_ALTERING_METHODS = EnumSet.of(POST, PUT, PATCH);
+    private static final String PROMPT_CODE = "%s._prompt";
+    private static final String TITLE_CODE = "_templates.%s.title";
+
+    @NonNull
+    private final MessageResolver messageResolver;
+    private final ConcurrentMap<PropertiesKey, List<HalFormsProperty>> properties = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TemplateKey, HalFormsTemplate> templates = new ConcurrentHashMap<>();
+
+    public HalFormsTemplateRegistry register(@NonNull Class<?> inputType) {
+        properties(getExposedProperties(inputType), LocaleContextHolder.getLocale());
+        return this;
+    }
+
+    public Map<String, HalFormsTemplate> findTemplates(@NonNull RepresentationModel<?> model) {
+        List<Affordance> affordances = model.getLink(SELF).map(Link::getAffordances).orElse(emptyList());
+        if (affordances.isEmpty()) {
+            return emptyMap();
+        }
+
+        Locale locale = LocaleContextHolder.getLocale();
+        Map<String, HalFormsTemplate> result = newLinkedHashMap();
+        for (Affordance affordance : affordances) {
+            AffordanceModel affordanceModel = affordance.getAffordanceModel(HAL_FORMS_JSON);
+            if (affordanceModel == null) {
+                throw new IllegalStateException("No HAL-FORMS affordance model found but expected!");
+            }
+            if (affordanceModel.hasHttpMethod(GET)) {
+                continue;
+            }
+
+            boolean defaultTemplate = result.isEmpty();
+            result.put(defaultTemplate ? DEFAULT_KEY : affordanceModel.getName(),
+                templates.computeIfAbsent(TemplateKey.of(affordanceModel, defaultTemplate, locale),
+                    k -> template(affordanceModel, defaultTemplate, locale)));
+        }
+        return result;
+    }
+
+    private HalFormsTemplate template(AffordanceModel affordanceModel, boolean defaultTemplate, Locale locale) {
+        HttpMethod httpMethod = affordanceModel.getHttpMethod();
+        InputPayloadMetadata input = affordanceModel.getInput();
+
+        List<HalFormsProperty> templateProperties =
+            ENTITY_ALTERING_METHODS.contains(httpMethod) ? properties(input, locale) : emptyList();
+        if (httpMethod == PATCH) {
+            templateProperties = templateProperties.stream().map(p -> p.withRequired(false)).collect(toList());
+        }
+
+        HalFormsTemplate template = HalFormsTemplate.forMethod(httpMethod).withProperties(templateProperties);
+        Stream<String> names =
+            concat(Stream.of(affordanceModel.getName()), defaultTemplate ? Stream.of(DEFAULT_KEY) : Stream.empty());
+        String[] titleCodes = names.flatMap(name -> codes(input, format(TITLE_CODE, name))).toArray(String[]::new);
+        return resolve(titleCodes).map(template::withTitle).orElse(template);
+    }
+
+    private List<HalFormsProperty> properties(InputPayloadMetadata input, Locale locale) {
+        return properties.computeIfAbsent(PropertiesKey.of(input, locale),
+            k -> input.stream().map(m -> property(input, m)).collect(toList()));
+    }
+
+    private HalFormsProperty property(InputPayloadMetadata input, PropertyMetadata metadata) {
+        HalFormsProperty property = HalFormsProperty.named(metadata.getName());
+        property = resolve(codes(input, format(PROMPT_CODE, metadata.getName())).toArray(String[]::new)).map(property::withPrompt)
+            .orElse(property);
+        return input.applyTo(property);
+    }
+
+    private Optional<String> resolve(String[] codes) {
+        return Optional.ofNullable(messageResolver.resolve(new DefaultMessageSourceResolvable(codes, "")));
+    }
+
+    private static Stream<String> codes(InputPayloadMetadata input, String code) {
+        return concat(input.getI18nCodes().stream().map(prefix -> prefix + "." + code), Stream.of(code));
+    }
+
+    @Value(staticConstructor = "of")
+    private static class PropertiesKey {
+
+        List<String> type;
+        Locale locale;
+
+        static PropertiesKey of(InputPayloadMetadata input, Locale locale) {
+            return of(input.getI18nCodes(), locale);
+        }
+    }
+
+    @Value(staticConstructor = "of")
+    private static class TemplateKey {
+
+        String name;
+        HttpMethod httpMethod;
+        List<String> type;
+        boolean defaultTemplate;
+        Locale locale;
+
+        static TemplateKey of(AffordanceModel affordanceModel, boolean defaultTemplate, Locale locale) {
+            return of(affordanceModel.getName(), affordanceModel.getHttpMethod(), affordanceModel.getInput().getI18nCodes(),
+                defaultTemplate, locale);
+        }
+    }
+
+}
@@ -22,10 +22,17 @@ package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
 import static org.springframework.hateoas.config.EnableHypermediaSupport.HypermediaType.HAL;
 import static org.springframework.hateoas.config.EnableHypermediaSupport.HypermediaType.HAL_FORMS;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import lombok.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.config.EnableHypermediaSupport;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.server.LinkRelationProvider;
+import org.springframework.hateoas.server.mvc.RepresentationModelProcessorInvoker;
 
 @Configuration
 @EnableHypermediaSupport(type = { HAL, HAL_FORMS })
@@ -37,4 +44,19 @@ public class HateoasConfiguration {
         return pagedResourcesAssembler;
     }
 
+    @Bean
+    public HalFormsTemplateRegistry halFormsTemplateRegistry(@NonNull MessageResolver messageResolver) {
+        return new HalFormsTemplateRegistry(messageResolver);
+    }
+
+    @Bean
+    public static HypermediaMessageConverterCustomizer hypermediaMessageConverterCustomizer(
+        @NonNull ObjectProvider<HalFormsTemplateRegistry> halFormsTemplateRegistry,
+        @NonNull ObjectProvider<LinkRelationProvider> linkRelationProvider, @NonNull ObjectProvider<CurieProvider> curieProvider,
+        @NonNull ObjectProvider<RepresentationModelProcessorInvoker> representationModelProcessorInvoker,
+        @NonNull ObjectProvider<PipelineMetrics> pipelineMetrics) {
+        return new HypermediaMessageConverterCustomizer(halFormsTemplateRegistry, linkRelationProvider, curieProvider,
+            representationModelProcessorInvoker, pipelineMetrics);
+    }
+
 }
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.TimedHttpMessageConverter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.server.LinkRelationProvider;
+import org.springframework.hateoas.server.mvc.RepresentationModelProcessorInvoker;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@RequiredArgsConstructor
+public class HypermediaMessageConverterCustomizer implements BeanPostProcessor {
+
+    @NonNull
+    private final ObjectProvider<HalFormsTemplateRegistry> halFormsTemplateRegistry;
+    @NonNull
+    private final ObjectProvider<LinkRelationProvider> linkRelationProvider;
+    @NonNull
+    private final ObjectProvider<CurieProvider> curieProvider;
+    @NonNull
+    private final ObjectProvider<RepresentationModelProcessorInvoker> processorInvoker;
+    @NonNull
+    private final ObjectProvider<PipelineMetrics> pipelineMetrics;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof RequestMappingHandlerAdapter) {
+            customize(((RequestMappingHandlerAdapter) bean).getMessageConverters());
+        }
+        return bean;
+    }
+
+    private void customize(List<HttpMessageConverter<?>> converters) {
+        Supplier<RepresentationModelProcessorInvoker> invoker = processorInvoker::getObject;
+        PipelineMetrics metrics = pipelineMetrics.getIfAvailable();
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (!(converter instanceof AbstractJackson2HttpMessageConverter)) {
+                continue;
+            }
+
+            ObjectMapper objectMapper = ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper();
+            List<MediaType> mediaTypes = converter.getSupportedMediaTypes();
+            if (mediaTypes.contains(HAL_FORMS_JSON)) {
+                HalFormsTemplateRegistry registry = halFormsTemplateRegistry.getObject();
+                objectMapper.registerModule(new HalFormsTemplateModule(registry));
+                objectMapper.registerModule(streamingModule(StreamingPagedModelSerializer
+                    .halForms(linkRelationProvider.getObject(), curieProvider(), invoker, registry, metrics)));
+            } else if (mediaTypes.contains(HAL_JSON)) {
+                objectMapper.registerModule(streamingModule(
+                    StreamingPagedModelSerializer.hal(linkRelationProvider.getObject(), curieProvider(), invoker, metrics)));
+            } else {
+                objectMapper.registerModule(streamingModule(StreamingPagedModelSerializer.json(invoker, metrics)));
+            }
+
+            if (metrics != null) {
+                converters.set(i, new TimedHttpMessageConverter((AbstractJackson2HttpMessageConverter) converter, metrics));
+            }
+        }
+    }
+
+    private CurieProvider curieProvider() {
+        return curieProvider.getIfAvailable(() -> CurieProvider.NONE);
+    }
+
+    private static SimpleModule streamingModule(StreamingPagedModelSerializer serializer) {
+        return new SimpleModule("streaming-paged-model-module").addSerializer(serializer);
+    }
+
+}
@@ -0,0 +1,619 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Collections.emptyList;
+import static java.util.Optional.empty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import lombok.NonNull;
+import org.springframework.data.domain.Sort.Direction;
+
+public final class IndexedStore<T> {
+
+    private final ColumnLayout<T> layout;
+    private final AtomicReference<Snapshot<T>> current;
+
+    public IndexedStore() {
+        this(ColumnLayout.objects());
+    }
+
+    // The sorted indexes are part of every snapshot, so a snapshot answers ordered and filtered reads out of a single version.
+    @SafeVarargs
+    public IndexedStore(@NonNull ColumnLayout<T> layout, @NonNull SortedIndex<T>... indexes) {
+        this.layout = layout;
+        this.current = new AtomicReference<>(Snapshot.empty(layout, indexes.clone()));
+    }
+
+    public Snapshot<T> snapshot() {
+        return current.get();
+    }
+
+    public Optional<T> get(@NonNull Long id) {
+        return snapshot().get(id);
+    }
+
+    public long size() {
+        return snapshot().size();
+    }
+
+    public List<T> getAll(@NonNull Collection<Long> ids) {
+        return snapshot().getAll(ids);
+    }
+
+    public List<T> values() {
+        return snapshot().values(0, Integer.MAX_VALUE);
+    }
+
+    public List<T> values(long offset, int limit) {
+        return snapshot().values(offset, limit);
+    }
+
+    public List<T> valuesAfter(Long after, int limit) {
+        return snapshot().valuesAfter(after, limit);
+    }
+
+    public T put(@NonNull Long id, @NonNull T entity) {
+        Snapshot<T> snapshot;
+        do {
+            snapshot = current.get();
+        } while (!current.compareAndSet(snapshot, snapshot.with(id, entity)));
+        return entity;
+    }
+
+    public void putAll(@NonNull List<? extends T> entities, @NonNull ToLongFunction<? super T> idOf) {
+        long[] ids = new long[entities.size()];
+        Object columns = layout.allocate(entities.size());
+        for (int i = 0; i < ids.length; i++) {
+            layout.set(columns, i, entities.get(i));
+            ids[i] = idOf.applyAsLong(entities.get(i));
+            checkArgument(i == 0 || ids[i] > ids[i - 1], "Entities must be ordered by strictly ascending id!");
+        }
+
+        Snapshot<T> snapshot;
+        do {
+            snapshot = current.get();
+        } while (!current.compareAndSet(snapshot, snapshot.withAll(ids, columns)));
+    }
+
+    public Optional<T> update(@NonNull Long id, @NonNull UnaryOperator<T> update) {
+        for (;;) {
+            Snapshot<T> snapshot = current.get();
+            Optional<T> entity = snapshot.get(id);
+            if (!entity.isPresent()) {
+                return empty();
+            }
+
+            T updated = update.apply(entity.get());
+            if (current.compareAndSet(snapshot, snapshot.with(id, updated))) {
+                return Optional.of(updated);
+            }
+        }
+    }
+
+    public boolean remove(@NonNull Long id) {
+        return remove(id, entity -> true);
+    }
+
+    public boolean remove(@NonNull Long id, @NonNull Predicate<? super T> condition) {
+        for (;;) {
+            Snapshot<T> snapshot = current.get();
+            Optional<T> entity = snapshot.get(id);
+            if (!entity.isPresent() || !condition.test(entity.get())) {
+                return false;
+            }
+
+            if (current.compareAndSet(snapshot, snapshot.without(id))) {
+                return true;
+            }
+        }
+    }
+
+    public static final class Snapshot<T> implements Iterable<T> {
+
+        private static final int CHUNK_SIZE = 256;
+        private static final Node EMPTY = new Node(new Object[0]);
+
+        private final ColumnLayout<T> layout;
+        private final SortedIndex<T>[] indexes;
+        private final Node root;
+        private final Object[] indexRoots;
+
+        private Snapshot(ColumnLayout<T> layout, SortedIndex<T>[] indexes, Node root, Object[] indexRoots) {
+            this.layout = layout;
+            this.indexes = indexes;
+            this.root = root;
+            this.indexRoots = indexRoots;
+        }
+
+        private static <T> Snapshot<T> empty(ColumnLayout<T> layout, SortedIndex<T>[] indexes) {
+            Object[] indexRoots = new Object[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexRoots[i] = indexes[i].empty();
+            }
+            return new Snapshot<>(layout, indexes, EMPTY, indexRoots);
+        }
+
+        public long size() {
+            return root.size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            List<Chunk> chunks = newArrayList();
+            root.chunks(chunks);
+            return chunks.stream().flatMap(chunk -> IntStream.range(0, chunk.ids.length).mapToObj(i -> entity(chunk, i)))
+                .iterator();
+        }
+
+        public Optional<T> get(@NonNull Long id) {
+            return Optional.ofNullable(entity(id));
+        }
+
+        public List<T> getAll(@NonNull Collection<Long> ids) {
+            if (root.size == 0 || ids.isEmpty()) {
+                return emptyList();
+            }
+
+            long[] sorted = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            List<T> result = newArrayListWithCapacity(sorted.length);
+            Chunk chunk = null;
+            for (long id : sorted) {
+                if (chunk == null || id > chunk.ids[chunk.ids.length - 1]) {
+                    chunk = chunkFor(id);
+                }
+
+                int index = chunk.indexOf(id);
+                if (index >= 0) {
+                    result.add(entity(chunk, index));
+                }
+            }
+            return result;
+        }
+
+        public List<T> values(long offset, int limit) {
+            if (offset < 0 || offset >= root.size || limit <= 0) {
+                return emptyList();
+            }
+
+            List<T> result = newArrayListWithCapacity((int) min(limit, root.size - offset));
+            collect(root, offset, limit, result);
+            return result;
+        }
+
+        public List<T> valuesAfter(Long after, int limit) {
+            if (root.size == 0 || limit <= 0) {
+                return emptyList();
+            }
+            return values(after != null ? rank(after) : 0, limit);
+        }
+
+        // Entries sharing a key are ordered by id, so the entities of a page are stable across requests.
+        public List<T> values(@NonNull SortedIndex<T> index, @NonNull Direction direction, long offset, int limit) {
+            return entities(index.ids(rootOf(index), direction, offset, limit));
+        }
+
+        public List<T> values(@NonNull SortedIndex<T> index, String key, @NonNull Direction direction, long offset, int limit) {
+            return entities(index.ids(rootOf(index), key, direction, offset, limit, this::entity));
+        }
+
+        public long count(@NonNull SortedIndex<T> index, String key) {
+            return index.count(rootOf(index), key, this::entity);
+        }
+
+        private Object rootOf(SortedIndex<T> index) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == index) {
+                    return indexRoots[i];
+                }
+            }
+            throw new IllegalArgumentException("Index is not maintained by this store!");
+        }
+
+        private List<T> entities(long[] ids) {
+            List<T> result = newArrayListWithCapacity(ids.length);
+            for (long id : ids) {
+                result.add(entity(id));
+            }
+            return result;
+        }
+
+        private T entity(long id) {
+            Chunk chunk = chunkFor(id);
+            int index = chunk != null ? chunk.indexOf(id) : -1;
+            return index >= 0 ? entity(chunk, index) : null;
+        }
+
+        private T entity(Chunk chunk, int index) {
+            return layout.get(chunk.columns, index, chunk.ids[index]);
+        }
+
+        private Chunk single(long id, T entity) {
+            Object columns = layout.allocate(1);
+            layout.set(columns, 0, entity);
+            return new Chunk(new long[] { id }, columns);
+        }
+
+        private Snapshot<T> with(long id, T entity) {
+            return indexed(stored(id, entity), new long[] { id }, i -> entity);
+        }
+
+        private Snapshot<T> stored(long id, T entity) {
+            Chunk chunk = chunkFor(id);
+            if (chunk == null) {
+                return rooted(new Chunk[] { single(id, entity) });
+            }
+
+            int index = chunk.indexOf(id);
+            if (index >= 0) {
+                return replace(chunk, chunk.replace(layout, index, entity));
+            }
+
+            int insertion = -(index + 1);
+            if (insertion == chunk.ids.length && chunk.ids.length >= CHUNK_SIZE && boundAfter(id) == Long.MAX_VALUE) {
+                return replace(chunk, chunk, single(id, entity));
+            }
+
+            Chunk grown = chunk.insert(layout, insertion, id, entity);
+            if (grown.ids.length > CHUNK_SIZE) {
+                int half = grown.ids.length / 2;
+                return replace(chunk, grown.range(layout, 0, half), grown.range(layout, half, grown.ids.length));
+            }
+            return replace(chunk, grown);
+        }
+
+        private Snapshot<T> withAll(long[] ids, Object columns) {
+            return indexed(storedAll(ids, columns), ids, i -> layout.get(columns, i, ids[i]));
+        }
+
+        private Snapshot<T> storedAll(long[] ids, Object columns) {
+            if (root.size == 0) {
+                Builder<T> builder = new Builder<>(layout);
+                for (int i = 0; i < ids.length; i++) {
+                    builder.add(ids[i], columns, i);
+                }
+                return rooted(builder.build());
+            }
+
+            // Only the chunks the entities fall into are merged, each one replaced along its own path.
+            Snapshot<T> result = this;
+            int next = 0;
+            while (next < ids.length) {
+                Chunk chunk = result.chunkFor(ids[next]);
+                long bound = result.boundAfter(ids[next]);
+
+                Builder<T> builder = new Builder<>(layout);
+                for (int i = 0; i < chunk.ids.length; i++) {
+                    while (next < ids.length && ids[next] < chunk.ids[i]) {
+                        builder.add(ids[next], columns, next++);
+                    }
+                    if (next < ids.length && ids[next] == chunk.ids[i]) {
+                        builder.add(ids[next], columns, next++);
+                    } else {
+                        builder.add(chunk.ids[i], chunk.columns, i);
+                    }
+                }
+                while (next < ids.length && ids[next] < bound) {
+                    builder.add(ids[next], columns, next++);
+                }
+                result = result.replace(chunk, builder.build());
+            }
+            return result;
+        }
+
+        private Snapshot<T> without(long id) {
+            Chunk chunk = chunkFor(id);
+            int index = chunk != null ? chunk.indexOf(id) : -1;
+            if (index < 0) {
+                return this;
+            }
+            return indexed(chunk.ids.length == 1 ? replace(chunk) : replace(chunk, chunk.remove(layout, index)),
+                new long[] { id }, i -> null);
+        }
+
+        // Entries are removed along the keys of this snapshot and added along the keys of the stored one, so every comparison
+        // reads the key its entry was sorted by. Entities keeping their key keep their entries, a null entity is a removal.
+        private Snapshot<T> indexed(Snapshot<T> stored, long[] ids, IntFunction<T> entities) {
+            if (indexes.length == 0) {
+                return stored;
+            }
+
+            Object[] roots = indexRoots.clone();
+            boolean[] added = new boolean[ids.length];
+            for (int i = 0; i < indexes.length; i++) {
+                SortedIndex<T> index = indexes[i];
+                for (int j = 0; j < ids.length; j++) {
+                    T previous = entity(ids[j]);
+                    T entity = entities.apply(j);
+                    added[j] = entity != null && (previous == null || !index.sameKey(previous, entity));
+                    if (previous != null && (entity == null || added[j])) {
+                        roots[i] = index.remove(roots[i], ids[j], previous, this::entity);
+                    }
+                }
+                for (int j = 0; j < ids.length; j++) {
+                    if (added[j]) {
+                        roots[i] = index.add(roots[i], ids[j], entities.apply(j), stored::entity);
+                    }
+                }
+            }
+            return new Snapshot<>(layout, indexes, stored.root, roots);
+        }
+
+        private Chunk chunkFor(long id) {
+            if (root.size == 0) {
+                return null;
+            }
+
+            Object child = root;
+            while (child instanceof Node) {
+                Node node = (Node) child;
+                child = node.children[node.indexFor(id)];
+            }
+            return (Chunk) child;
+        }
+
+        private long boundAfter(long id) {
+            long bound = Long.MAX_VALUE;
+            Object child = root;
+            while (child instanceof Node) {
+                Node node = (Node) child;
+                int index = node.indexFor(id);
+                if (index + 1 < node.children.length) {
+                    bound = node.firstIds[index + 1];
+                }
+                child = node.children[index];
+            }
+            return bound;
+        }
+
+        private long rank(long id) {
+            long rank = 0;
+            Object child = root;
+            while (child instanceof Node) {
+                Node node = (Node) child;
+                int index = node.indexFor(id);
+                rank += node.offsets[index];
+                child = node.children[index];
+            }
+
+            int index = ((Chunk) child).indexOf(id);
+            return rank + (index >= 0 ? index + 1 : -(index + 1));
+        }
+
+        private void collect(Object child, long offset, int limit, List<T> result) {
+            if (child instanceof Chunk) {
+                Chunk chunk = (Chunk) child;
+                for (int i = (int) offset; i < chunk.ids.length && result.size() < limit; i++) {
+                    result.add(entity(chunk, i));
+                }
+                return;
+            }
+
+            Node node = (Node) child;
+            for (int i = node.indexAt(offset); i < node.children.length && result.size() < limit; i++) {
+                collect(node.children[i], max(offset - node.offsets[i], 0), limit, result);
+            }
+        }
+
+        private Snapshot<T> rooted(Chunk[] chunks) {
+            return new Snapshot<>(layout, indexes, root(Node.group(chunks)), indexRoots);
+        }
+
+        private Snapshot<T> replace(Chunk chunk, Chunk... replacements) {
+            return new Snapshot<>(layout, indexes, root(root.replace(chunk.ids[0], replacements)), indexRoots);
+        }
+
+        private static Node root(Object[] nodes) {
+            while (nodes.length > 1) {
+                nodes = Node.group(nodes);
+            }
+
+            Node root = nodes.length > 0 ? (Node) nodes[0] : EMPTY;
+            while (root.children.length == 1 && root.children[0] instanceof Node) {
+                root = (Node) root.children[0];
+            }
+            return root;
+        }
+
+    }
+
+    // Persistent index over the chunks, a write copies the nodes on the path to its chunk only.
+    private static final class Node {
+
+        private static final int FANOUT = 32;
+
+        private final Object[] children;
+        private final long[] firstIds;
+        private final long[] offsets;
+        private final long size;
+
+        private Node(Object[] children) {
+            this.children = children;
+            this.firstIds = new long[children.length];
+            this.offsets = new long[children.length];
+
+            long size = 0;
+            for (int i = 0; i < children.length; i++) {
+                firstIds[i] = firstIdOf(children[i]);
+                offsets[i] = size;
+                size += sizeOf(children[i]);
+            }
+            this.size = size;
+        }
+
+        private static Object[] group(Object[] children) {
+            int count = (children.length + FANOUT - 1) / FANOUT;
+            Object[] nodes = new Object[count];
+            for (int i = 0; i < count; i++) {
+                int from = (int) ((long) children.length * i / count);
+                int to = (int) ((long) children.length * (i + 1) / count);
+                nodes[i] = new Node(Arrays.copyOfRange(children, from, to));
+            }
+            return nodes;
+        }
+
+        private static long firstIdOf(Object child) {
+            return child instanceof Chunk ? ((Chunk) child).ids[0] : ((Node) child).firstIds[0];
+        }
+
+        private static long sizeOf(Object child) {
+            return child instanceof Chunk ? ((Chunk) child).ids.length : ((Node) child).size;
+        }
+
+        private int indexFor(long id) {
+            int index = Arrays.binarySearch(firstIds, id);
+            return index >= 0 ? index : max(-(index + 1) - 1, 0);
+        }
+
+        private int indexAt(long offset) {
+            int index = Arrays.binarySearch(offsets, offset);
+            return index >= 0 ? index : -(index + 1) - 1;
+        }
+
+        private Object[] replace(long id, Chunk[] replacements) {
+            int index = indexFor(id);
+            Object child = children[index];
+            Object[] replaced = child instanceof Node ? ((Node) child).replace(id, replacements) : replacements;
+
+            Object[] result = new Object[children.length - 1 + replaced.length];
+            System.arraycopy(children, 0, result, 0, index);
+            System.arraycopy(replaced, 0, result, index, replaced.length);
+            System.arraycopy(children, index + 1, result, index + replaced.length, children.length - index - 1);
+            return group(result);
+        }
+
+        private void chunks(List<Chunk> result) {
+            for (Object child : children) {
+                if (child instanceof Chunk) {
+                    result.add((Chunk) child);
+                } else {
+                    ((Node) child).chunks(result);
+                }
+            }
+        }
+
+    }
+
+    private static final class Builder<T> {
+
+        private final ColumnLayout<T> layout;
+        private final List<Chunk> chunks = newArrayList();
+        private final long[] ids = new long[Snapshot.CHUNK_SIZE];
+        private final Object columns;
+        private int size;
+
+        private Builder(ColumnLayout<T> layout) {
+            this.layout = layout;
+            this.columns = layout.allocate(Snapshot.CHUNK_SIZE);
+        }
+
+        private void add(long id, Object source, int index) {
+            ids[size] = id;
+            layout.copy(source, index, columns, size++, 1);
+            if (size == ids.length) {
+                flush();
+            }
+        }
+
+        private Chunk[] build() {
+            flush();
+            return chunks.toArray(new Chunk[chunks.size()]);
+        }
+
+        private void flush() {
+            if (size > 0) {
+                Object flushed = layout.allocate(size);
+                layout.copy(columns, 0, flushed, 0, size);
+                chunks.add(new Chunk(Arrays.copyOf(ids, size), flushed));
+                size = 0;
+            }
+        }
+
+    }
+
+    private static final class Chunk {
+
+        private final long[] ids;
+        private final Object columns;
+
+        private Chunk(long[] ids, Object columns) {
+            this.ids = ids;
+            this.columns = columns;
+        }
+
+        private int indexOf(long id) {
+            return Arrays.binarySearch(ids, id);
+        }
+
+        private <T> Chunk replace(ColumnLayout<T> layout, int index, T entity) {
+            Object replaced = layout.allocate(ids.length);
+            layout.copy(columns, 0, replaced, 0, ids.length);
+            layout.set(replaced, index, entity);
+            return new Chunk(ids, replaced);
+        }
+
+        private <T> Chunk insert(ColumnLayout<T> layout, int index, long id, T entity) {
+            long[] grownIds = new long[ids.length + 1];
+            Object grownColumns = layout.allocate(ids.length + 1);
+            System.arraycopy(ids, 0, grownIds, 0, index);
+            layout.copy(columns, 0, grownColumns, 0, index);
+            grownIds[index] = id;
+            layout.set(grownColumns, index, entity);
+            System.arraycopy(ids, index, grownIds, index + 1, ids.length - index);
+            layout.copy(columns, index, grownColumns, index + 1, ids.length - index);
+            return new Chunk(grownIds, grownColumns);
+        }
+
+        private Chunk remove(ColumnLayout<?> layout, int index) {
+            long[] shrunkIds = new long[ids.length - 1];
+            Object shrunkColumns = layout.allocate(ids.length - 1);
+            System.arraycopy(ids, 0, shrunkIds, 0, index);
+            layout.copy(columns, 0, shrunkColumns, 0, index);
+            System.arraycopy(ids, index + 1, shrunkIds, index, ids.length - index - 1);
+            layout.copy(columns, index + 1, shrunkColumns, index, ids.length - index - 1);
+            return new Chunk(shrunkIds, shrunkColumns);
+        }
+
+        private Chunk range(ColumnLayout<?> layout, int from, int to) {
+            Object ranged = layout.allocate(to - from);
+            layout.copy(columns, from, ranged, 0, to - from);
+            return new Chunk(Arrays.copyOfRange(ids, from, to), ranged);
+        }
+
+    }
+
+}
@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toList;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
+import static com.google.common.collect.MoreCollectors.onlyElement;
+import static org.springframework.core.ResolvableType.forMethodReturnType;
+import static org.springframework.core.annotation.AnnotatedElementUtils.hasAnnotation;
+import static org.springframework.hateoas.mediatype.PropertyUtils.getExposedProperties;
+import static org.springframework.web.context.request.RequestAttributes.SCOPE_REQUEST;
+import static org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentServletMapping;
+import static org.springframework.web.util.UriComponents.UriTemplateVariables.SKIP_VALUE;
+import static org.springframework.web.util.UriUtils.encodePathSegment;
+import static org.springframework.web.util.UriUtils.encodeQueryParam;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.ResolvableType;
+import org.springframework.hateoas.Affordance;
+import org.springframework.hateoas.AffordanceModel.InputPayloadMetadata;
+import org.springframework.hateoas.AffordanceModel.PayloadMetadata;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.QueryParameter;
+import org.springframework.hateoas.mediatype.Affordances;
+import org.springframework.hateoas.server.core.AnnotationMappingDiscoverer;
+import org.springframework.hateoas.server.core.MappingDiscoverer;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@RequiredArgsConstructor
+public final class LinkTemplate {
+
+    private static final MappingDiscoverer MAPPING_DISCOVERER = new AnnotationMappingDiscoverer(RequestMapping.class);
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+    private static final String BASE_URI_ATTRIBUTE = LinkTemplate.class.getName() + "#BASE_URI";
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final String mapping;
+    @NonNull
+    private final List<Parameter> parameters;
+    @NonNull
+    private final Collection<HttpMethod> httpMethods;
+    @NonNull
+    private final InputPayloadMetadata input;
+    @NonNull
+    private final PayloadMetadata output;
+    @NonNull
+    private final List<QueryParameter> queryParameters;
+
+    public static LinkTemplate of(@NonNull Class<?> controller, @NonNull String methodName) {
+        Method method = stream(controller.getMethods()).filter(m -> m.getName().equals(methodName))
+            .filter(m -> hasAnnotation(m, RequestMapping.class)).collect(onlyElement());
+
+        List<MethodParameter> methodParameters = stream(method.getParameters()).map(MethodParameter::forParameter)
+            .peek(p -> p.initParameterNameDiscovery(PARAMETER_NAME_DISCOVERER)).collect(toList());
+
+        ResolvableType inputType = methodParameters.stream().filter(p -> p.hasParameterAnnotation(RequestBody.class))
+            .map(ResolvableType::forMethodParameter).findFirst().orElse(ResolvableType.NONE);
+        List<QueryParameter> queryParameters = methodParameters.stream().filter(p -> p.hasParameterAnnotation(RequestParam.class))
+            .map(QueryParameter::of).collect(toList());
+
+        return new LinkTemplate(method.getName(), MAPPING_DISCOVERER.getMapping(controller, method),
+            methodParameters.stream().map(Parameter::of).collect(toList()),
+            MAPPING_DISCOVERER.getRequestMethod(controller, method), getExposedProperties(inputType),
+            getExposedProperties(forMethodReturnType(method)), queryParameters);
+    }
+
+    public String expand(@NonNull Object... arguments) {
+        checkArgument(arguments.length <= parameters.size(), "Method '%s' only takes %s arguments!", name, parameters.size());
+
+        UriComponentsBuilder builder = baseUri().path(mapping);
+        Map<String, Object> uriVariables = newHashMapWithExpectedSize(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = parameters.get(i);
+            Object argument = i < arguments.length ? arguments[i] : null;
+
+            if (parameter.isPathVariable()) {
+                uriVariables.put(parameter.getName(),
+                    argument != null ? encodePathSegment(argument.toString(), UTF_8) : SKIP_VALUE);
+            } else if (parameter.isRequestParam() && argument != null) {
+                builder.queryParam(parameter.getName(), encodeQueryParam(toQueryValue(argument), UTF_8));
+            }
+        }
+        return builder.buildAndExpand(uriVariables).toUriString();
+    }
+
+    private static String toQueryValue(Object argument) {
+        return argument instanceof Collection ? StringUtils.collectionToCommaDelimitedString((Collection<?>) argument)
+            : argument.toString();
+    }
+
+    public Link link(@NonNull LinkRelation relation, @NonNull Object... arguments) {
+        return new Link(expand(arguments), relation);
+    }
+
+    public List<Affordance> affordances(@NonNull String href) {
+        Affordances affordances = Affordances.of(new Link(href, LinkRelation.of(name)));
+        for (HttpMethod httpMethod : httpMethods) {
+            affordances = affordances.afford(httpMethod).withInput(input).withOutput(output).withParameters(queryParameters)
+                .withName(name).build();
+        }
+        return affordances.toLink().getAffordances();
+    }
+
+    private static UriComponentsBuilder baseUri() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return UriComponentsBuilder.fromPath("/");
+        }
+
+        UriComponents baseUri = (UriComponents) requestAttributes.getAttribute(BASE_URI_ATTRIBUTE, SCOPE_REQUEST);
+        if (baseUri == null) {
+            baseUri = fromCurrentServletMapping().build();
+            requestAttributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, SCOPE_REQUEST);
+        }
+        return UriComponentsBuilder.newInstance().uriComponents(baseUri);
+    }
+
+    @Value
+    private static class Parameter {
+
+        boolean pathVariable;
+        boolean requestParam;
+        String name;
+
+        static Parameter of(MethodParameter parameter) {
+            PathVariable pathVariable = parameter.getParameterAnnotation(PathVariable.class);
+            if (pathVariable != null) {
+                return new Parameter(true, false, nameOf(parameter, pathVariable.name(), pathVariable.value()));
+            }
+
+            RequestParam requestParam = parameter.getParameterAnnotation(RequestParam.class);
+            if (requestParam != null) {
+                return new Parameter(false, true, nameOf(parameter, requestParam.name(), requestParam.value()));
+            }
+            return new Parameter(false, false, parameter.getParameterName());
+        }
+
+        private static String nameOf(MethodParameter parameter, String... declared) {
+            for (String candidate : declared) {
+                if (StringUtils.hasText(candidate)) {
+                    return candidate;
+                }
+            }
+
+            String name = parameter.getParameterName();
+            if (name == null) {
+                throw new IllegalStateException(format("Could not determine the name of parameter %s of method '%s'!",
+                    parameter.getParameterIndex(), parameter.getExecutable().getName()));
+            }
+            return name;
+        }
+    }
+
+}
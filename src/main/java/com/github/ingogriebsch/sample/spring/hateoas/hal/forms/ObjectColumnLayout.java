@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+final class ObjectColumnLayout implements ColumnLayout<Object> {
+
+    static final ObjectColumnLayout INSTANCE = new ObjectColumnLayout();
+
+    private ObjectColumnLayout() {
+    }
+
+    @Override
+    public Object allocate(int size) {
+        return new Object[size];
+    }
+
+    @Override
+    public Object get(Object columns, int index, long id) {
+        return ((Object[]) columns)[index];
+    }
+
+    @Override
+    public void set(Object columns, int index, Object entity) {
+        ((Object[]) columns)[index] = entity;
+    }
+
+    @Override
+    public void copy(Object source, int sourceIndex, Object target, int targetIndex, int length) {
+        System.arraycopy(source, sourceIndex, target, targetIndex, length);
+    }
+
+}
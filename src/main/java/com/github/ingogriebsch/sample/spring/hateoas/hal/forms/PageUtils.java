@@ -19,17 +19,36 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
 
+import static java.lang.Math.max;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Optional.empty;
+import static java.util.stream.Collectors.toList;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.reverse;
+import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
 import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore.Snapshot;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
 
 @RequiredArgsConstructor(access = PRIVATE)
 public final class PageUtils {
@@ -38,6 +57,71 @@ public final class PageUtils {
         return new PageImpl<>(match(list, pageable), pageable, list.size());
     }
 
+    public static <T> Page<T> toPage(@NonNull IndexedStore<T> store, @NonNull Pageable pageable) {
+        Snapshot<T> snapshot = store.snapshot();
+        return new PageImpl<>(snapshot.values(pageable.getOffset(), pageable.getPageSize()), pageable, snapshot.size());
+    }
+
+    public static <T> Page<T> toPage(@NonNull IndexedStore<T> store, @NonNull Direction direction, @NonNull Pageable pageable) {
+        if (direction == ASC) {
+            return toPage(store, pageable);
+        }
+
+        Snapshot<T> snapshot = store.snapshot();
+        long end = snapshot.size() - pageable.getOffset();
+        if (end <= 0) {
+            return new PageImpl<>(emptyList(), pageable, snapshot.size());
+        }
+
+        long start = max(0, end - pageable.getPageSize());
+        return new PageImpl<>(reverse(snapshot.values(start, (int) (end - start))), pageable, snapshot.size());
+    }
+
+    // The entities, the index and the total are taken from a single snapshot, so the page is exactly as full as the total says.
+    public static <T> Page<T> toPage(@NonNull IndexedStore<T> store, @NonNull SortedIndex<T> index, @NonNull Direction direction,
+        @NonNull Pageable pageable) {
+        Snapshot<T> snapshot = store.snapshot();
+        return new PageImpl<>(snapshot.values(index, direction, pageable.getOffset(), pageable.getPageSize()), pageable,
+            snapshot.size());
+    }
+
+    public static <T> Page<T> toPage(@NonNull IndexedStore<T> store, @NonNull SortedIndex<T> index, String key,
+        @NonNull Direction direction, @NonNull Pageable pageable) {
+        Snapshot<T> snapshot = store.snapshot();
+        return new PageImpl<>(snapshot.values(index, key, direction, pageable.getOffset(), pageable.getPageSize()), pageable,
+            snapshot.count(index, key));
+    }
+
+    // The ids come from an index maintained next to the store, so ids whose entity vanished in between are skipped.
+    public static <T> Page<T> toPage(@NonNull IndexedStore<T> store, @NonNull List<Long> ids,
+        @NonNull ToLongFunction<? super T> idOf, @NonNull Pageable pageable, long total) {
+        Map<Long, T> found = newHashMapWithExpectedSize(ids.size());
+        store.getAll(ids).forEach(entity -> found.put(idOf.applyAsLong(entity), entity));
+        return new PageImpl<>(ids.stream().map(found::get).filter(Objects::nonNull).collect(toList()), pageable, total);
+    }
+
+    public static Optional<Order> orderOf(@NonNull Sort sort, @NonNull String... properties) {
+        List<Order> orders = sort.toList();
+        if (orders.isEmpty()) {
+            return empty();
+        }
+
+        checkArgument(orders.size() == 1, "Sorting is only supported on a single property!");
+        Order order = orders.get(0);
+        checkArgument(asList(properties).contains(order.getProperty()), "Sorting on '%s' is not supported!", order.getProperty());
+        return Optional.of(order);
+    }
+
+    public static <T> Page<T> withoutContent(@NonNull Page<T> page) {
+        return new PageImpl<>(emptyList(), page.getPageable(), page.getTotalElements());
+    }
+
+    public static <T> Slice<T> toSlice(@NonNull IndexedStore<T> store, Long after, int size) {
+        List<T> content = store.valuesAfter(after, size + 1);
+        boolean hasNext = content.size() > size;
+        return new SliceImpl<>(hasNext ? content.subList(0, size) : content, PageRequest.of(0, size), hasNext);
+    }
+
     static <T> List<T> match(@NonNull List<T> list, @NonNull Pageable pageable) {
         int offset = pageable.getPageNumber() * pageable.getPageSize();
 
@@ -0,0 +1,54 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SequenceIdGenerator implements IdGenerator {
+
+    private final AtomicLong sequence;
+
+    public SequenceIdGenerator() {
+        this(0L);
+    }
+
+    public SequenceIdGenerator(long initialValue) {
+        this.sequence = new AtomicLong(initialValue);
+    }
+
+    @Override
+    public Long next() {
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public Long next(int count) {
+        checkArgument(count > 0, "Count must be greater than 0 but is %s!", count);
+        return sequence.getAndAdd(count) + 1L;
+    }
+
+    @Override
+    public Long current() {
+        return sequence.get();
+    }
+
+}
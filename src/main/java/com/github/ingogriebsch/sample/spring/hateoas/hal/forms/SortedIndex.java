@@ -0,0 +1,351 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+
+import static org.springframework.data.domain.Sort.Direction.DESC;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort.Direction;
+
+// Order statistic tree over the ids of a store, every node counts the entries below it so a page or the entries of a key are
+// found in O(log n). The entries keep the id and a prefix of the key only. The prefix decides most comparisons, ties are broken
+// by reading the key of the entity from the snapshot the tree belongs to. The trees are part of the snapshots of the store, so
+// they always describe exactly the entities of their snapshot.
+public final class SortedIndex<T> {
+
+    private static final int LEAF_SIZE = 64;
+    private static final int FANOUT = 32;
+    private static final Comparator<String> KEY_ORDER = nullsFirst(naturalOrder());
+    private static final Leaf EMPTY = new Leaf(new long[0], new long[0]);
+
+    private final Function<? super T, String> keyOf;
+
+    public SortedIndex(@NonNull Function<? super T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    // Packs the first four chars of a key, which compares unsigned like the key itself as far as the chars reach.
+    static long prefixOf(String key) {
+        long prefix = 0;
+        for (int i = 0; i < 4; i++) {
+            prefix = prefix << 16 | (key != null && i < key.length() ? key.charAt(i) : 0);
+        }
+        return prefix;
+    }
+
+    Object empty() {
+        return EMPTY;
+    }
+
+    boolean sameKey(T previous, T entity) {
+        return KEY_ORDER.compare(keyOf.apply(previous), keyOf.apply(entity)) == 0;
+    }
+
+    // The entities resolve the keys of the entries already in the tree, so they have to be the ones the entries were added for.
+    Object add(Object root, long id, T entity, LongFunction<? extends T> entities) {
+        Probe probe = new Probe(keyOf.apply(entity), id);
+        Node[] replaced = update((Node) root, probe, entities,
+            (leaf, index) -> index >= 0 ? null : leaf.insert(-(index + 1), probe.prefix, id));
+        return replaced != null ? rooted(replaced) : root;
+    }
+
+    Object remove(Object root, long id, T entity, LongFunction<? extends T> entities) {
+        Probe probe = new Probe(keyOf.apply(entity), id);
+        Node[] replaced = update((Node) root, probe, entities, (leaf, index) -> index >= 0 ? leaf.remove(index) : null);
+        return replaced != null ? rooted(replaced) : root;
+    }
+
+    // Entries sharing a key are ordered by id, so the ids of a page are stable across requests.
+    long[] ids(Object root, @NonNull Direction direction, long offset, int limit) {
+        Node node = (Node) root;
+        return page(node, 0, node.size, direction, offset, limit);
+    }
+
+    long[] ids(Object root, String key, @NonNull Direction direction, long offset, int limit,
+        LongFunction<? extends T> entities) {
+        Node node = (Node) root;
+        return page(node, rank(node, new Probe(key, Long.MIN_VALUE), entities),
+            rank(node, new Probe(key, Long.MAX_VALUE), entities), direction, offset, limit);
+    }
+
+    long count(Object root, String key, LongFunction<? extends T> entities) {
+        Node node = (Node) root;
+        return rank(node, new Probe(key, Long.MAX_VALUE), entities) - rank(node, new Probe(key, Long.MIN_VALUE), entities);
+    }
+
+    private Node[] update(Node node, Probe probe, LongFunction<? extends T> entities, LeafChange change) {
+        if (node instanceof Leaf) {
+            return change.apply((Leaf) node, search((Leaf) node, probe, entities));
+        }
+
+        Inner inner = (Inner) node;
+        int index = childFor(inner, probe, entities);
+        Node[] replaced = update(inner.children[index], probe, entities, change);
+        if (replaced == null) {
+            return null;
+        }
+
+        Node[] children = new Node[inner.children.length - 1 + replaced.length];
+        System.arraycopy(inner.children, 0, children, 0, index);
+        System.arraycopy(replaced, 0, children, index, replaced.length);
+        System.arraycopy(inner.children, index + 1, children, index + replaced.length, inner.children.length - index - 1);
+        return group(children);
+    }
+
+    private long rank(Node node, Probe probe, LongFunction<? extends T> entities) {
+        long rank = 0;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int index = childFor(inner, probe, entities);
+            rank += inner.offsets[index];
+            node = inner.children[index];
+        }
+
+        int index = search((Leaf) node, probe, entities);
+        return rank + (index >= 0 ? index : -(index + 1));
+    }
+
+    private int search(Leaf leaf, Probe probe, LongFunction<? extends T> entities) {
+        int low = 0;
+        int high = leaf.ids.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = compare(leaf.prefixes[middle], leaf.ids[middle], probe, entities);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int childFor(Inner inner, Probe probe, LongFunction<? extends T> entities) {
+        int low = 1;
+        int high = inner.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(inner.firstPrefixes[middle], inner.firstIds[middle], probe, entities) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    private int compare(long prefix, long id, Probe probe, LongFunction<? extends T> entities) {
+        int result = Long.compareUnsigned(prefix, probe.prefix);
+        if (result == 0) {
+            result = KEY_ORDER.compare(keyOf.apply(entities.apply(id)), probe.key);
+        }
+        return result != 0 ? result : Long.compare(id, probe.id);
+    }
+
+    private static long[] page(Node node, long from, long to, Direction direction, long offset, int limit) {
+        long available = to - from - max(offset, 0);
+        if (available <= 0 || limit <= 0) {
+            return new long[0];
+        }
+
+        long[] ids = new long[(int) min(limit, available)];
+        long start = direction == DESC ? to - max(offset, 0) - ids.length : from + max(offset, 0);
+        collect(node, start, ids, 0);
+        if (direction == DESC) {
+            for (int i = 0, j = ids.length - 1; i < j; i++, j--) {
+                long id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+            }
+        }
+        return ids;
+    }
+
+    private static int collect(Node node, long offset, long[] result, int filled) {
+        if (node instanceof Leaf) {
+            long[] ids = ((Leaf) node).ids;
+            for (int i = (int) offset; i < ids.length && filled < result.length; i++) {
+                result[filled++] = ids[i];
+            }
+            return filled;
+        }
+
+        Inner inner = (Inner) node;
+        int index = Arrays.binarySearch(inner.offsets, offset);
+        for (int i = index >= 0 ? index : -(index + 1) - 1; i < inner.children.length && filled < result.length; i++) {
+            filled = collect(inner.children[i], max(offset - inner.offsets[i], 0), result, filled);
+        }
+        return filled;
+    }
+
+    private static Node[] group(Node[] children) {
+        int count = (children.length + FANOUT - 1) / FANOUT;
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            int from = (int) ((long) children.length * i / count);
+            int to = (int) ((long) children.length * (i + 1) / count);
+            nodes[i] = new Inner(Arrays.copyOfRange(children, from, to));
+        }
+        return nodes;
+    }
+
+    private static Node rooted(Node[] nodes) {
+        while (nodes.length > 1) {
+            nodes = group(nodes);
+        }
+
+        Node root = nodes.length > 0 ? nodes[0] : EMPTY;
+        while (root instanceof Inner && ((Inner) root).children.length == 1) {
+            root = ((Inner) root).children[0];
+        }
+        return root;
+    }
+
+    private interface LeafChange {
+
+        Node[] apply(Leaf leaf, int index);
+    }
+
+    @RequiredArgsConstructor
+    private abstract static class Node {
+
+        private final long size;
+
+        abstract long firstPrefix();
+
+        abstract long firstId();
+    }
+
+    private static final class Leaf extends Node {
+
+        private final long[] prefixes;
+        private final long[] ids;
+
+        private Leaf(long[] prefixes, long[] ids) {
+            super(ids.length);
+            this.prefixes = prefixes;
+            this.ids = ids;
+        }
+
+        @Override
+        long firstPrefix() {
+            return prefixes[0];
+        }
+
+        @Override
+        long firstId() {
+            return ids[0];
+        }
+
+        private Node[] insert(int index, long prefix, long id) {
+            long[] grownPrefixes = new long[prefixes.length + 1];
+            long[] grownIds = new long[ids.length + 1];
+            System.arraycopy(prefixes, 0, grownPrefixes, 0, index);
+            System.arraycopy(ids, 0, grownIds, 0, index);
+            grownPrefixes[index] = prefix;
+            grownIds[index] = id;
+            System.arraycopy(prefixes, index, grownPrefixes, index + 1, prefixes.length - index);
+            System.arraycopy(ids, index, grownIds, index + 1, ids.length - index);
+
+            if (grownIds.length <= LEAF_SIZE) {
+                return new Node[] { new Leaf(grownPrefixes, grownIds) };
+            }
+            int half = grownIds.length / 2;
+            return new Node[] { new Leaf(Arrays.copyOfRange(grownPrefixes, 0, half), Arrays.copyOfRange(grownIds, 0, half)),
+                new Leaf(Arrays.copyOfRange(grownPrefixes, half, grownPrefixes.length),
+                    Arrays.copyOfRange(grownIds, half, grownIds.length)) };
+        }
+
+        private Node[] remove(int index) {
+            if (ids.length == 1) {
+                return new Node[0];
+            }
+
+            long[] shrunkPrefixes = new long[prefixes.length - 1];
+            long[] shrunkIds = new long[ids.length - 1];
+            System.arraycopy(prefixes, 0, shrunkPrefixes, 0, index);
+            System.arraycopy(ids, 0, shrunkIds, 0, index);
+            System.arraycopy(prefixes, index + 1, shrunkPrefixes, index, prefixes.length - index - 1);
+            System.arraycopy(ids, index + 1, shrunkIds, index, ids.length - index - 1);
+            return new Node[] { new Leaf(shrunkPrefixes, shrunkIds) };
+        }
+    }
+
+    private static final class Inner extends Node {
+
+        private final Node[] children;
+        private final long[] firstPrefixes;
+        private final long[] firstIds;
+        private final long[] offsets;
+
+        private Inner(Node[] children) {
+            super(Arrays.stream(children).mapToLong(child -> child.size).sum());
+            this.children = children;
+            this.firstPrefixes = new long[children.length];
+            this.firstIds = new long[children.length];
+            this.offsets = new long[children.length];
+
+            long offset = 0;
+            for (int i = 0; i < children.length; i++) {
+                firstPrefixes[i] = children[i].firstPrefix();
+                firstIds[i] = children[i].firstId();
+                offsets[i] = offset;
+                offset += children[i].size;
+            }
+        }
+
+        @Override
+        long firstPrefix() {
+            return firstPrefixes[0];
+        }
+
+        @Override
+        long firstId() {
+            return firstIds[0];
+        }
+    }
+
+    private static final class Probe {
+
+        private final long prefix;
+        private final String key;
+        private final long id;
+
+        private Probe(String key, long id) {
+            this.prefix = prefixOf(key);
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+}
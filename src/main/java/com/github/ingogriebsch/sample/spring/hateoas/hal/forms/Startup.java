@@ -19,66 +19,126 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
 
+import static java.lang.Math.min;
+import static java.lang.Math.pow;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.rangeClosed;
+
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
-import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+import static org.apache.commons.lang3.RandomStringUtils.random;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
-import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.Inbox;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxInput;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService;
-import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.Message;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageInput;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 
 @Component
+@EnableConfigurationProperties(StartupProperties.class)
 @RequiredArgsConstructor
 @Slf4j
 public class Startup implements CommandLineRunner {
 
-    // @formatter:off
-    private static final ArrayList<MessageInput> MESSAGES = newArrayList(
-        new MessageInput("Message 1", "M1 " + randomAlphabetic(12)),
-        new MessageInput("Message 2", "M2 " + randomAlphabetic(12)), 
-        new MessageInput("Message 3", "M3 " + randomAlphabetic(12)),
-        new MessageInput("Message 4", "M4 " + randomAlphabetic(12)), 
-        new MessageInput("Message 5", "M5 " + randomAlphabetic(12)));
-    // @formatter:on
-
-    // @formatter:off
-    private static final ArrayList<InboxInput> INBOXES = newArrayList(
-        new InboxInput("Inbox 1", "I1 "  + randomAlphabetic(12)),
-        new InboxInput("Inbox 2", "I2 " + randomAlphabetic(12)), 
-        new InboxInput("Inbox 3", "I3 " + randomAlphabetic(12)));
-    // @formatter:on
-
     @NonNull
     private final InboxService inboxService;
     @NonNull
     private final MessageService messageService;
+    @NonNull
+    private final StartupProperties startupProperties;
 
     @Override
     public void run(String... args) throws Exception {
-        INBOXES.stream().forEach(i -> insert(i));
+        if (inboxService.findAll(PageRequest.of(0, 1)).hasContent()) {
+            log.info("Skipping sample data because inboxes were recovered from storage.");
+            return;
+        }
+
+        long start = nanoTime();
+        List<Long> inboxIds = rangeClosed(1, startupProperties.getInboxes())
+            .mapToObj(i -> inboxService.insert(new InboxInput("Inbox " + i, "I" + i + " " + content())).getId())
+            .collect(toList());
+        long messages =
+            insertMessages(inboxIds, distribute(startupProperties.getInboxes() * (long) startupProperties.getMessagesPerInbox(),
+                startupProperties.getInboxes(), startupProperties.getSkew()));
+
+        double seconds = (nanoTime() - start) / 1e9;
+        log.info("Inserted {} inboxes with {} messages in {} s ({} messages/s).", inboxIds.size(), messages,
+            String.format("%.3f", seconds), (long) (messages / seconds));
     }
 
-    private void insert(InboxInput inboxInput) {
-        Inbox inbox = inboxService.insert(inboxInput);
-        log.debug("Inserted inbox '{}'.", inbox);
-        insertMessages(inbox.getId());
+    // Messages are inserted in batches, which reserve their ids at once and are journaled as one mutation. The batches are
+    // independent of each other, so even a single heavily skewed inbox is filled by all threads.
+    private long insertMessages(List<Long> inboxIds, int[] counts) throws InterruptedException, ExecutionException {
+        int batchSize = startupProperties.getBatchSize();
+        checkArgument(batchSize > 0, "The batch size must be positive!");
+
+        List<Callable<Integer>> batches = newArrayList();
+        for (int i = 0; i < inboxIds.size(); i++) {
+            Long inboxId = inboxIds.get(i);
+            for (int from = 1; from <= counts[i]; from += batchSize) {
+                int first = from;
+                int last = min(from + batchSize - 1, counts[i]);
+                batches.add(() -> insertMessages(inboxId, first, last));
+            }
+        }
+
+        ExecutorService executor = newFixedThreadPool(startupProperties.getParallelism());
+        try {
+            long inserted = 0;
+            for (Future<Integer> batch : executor.invokeAll(batches)) {
+                inserted += batch.get();
+            }
+            return inserted;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
-    private void insertMessages(Long inboxId) {
-        MESSAGES.stream().forEach(m -> insert(inboxId, m));
+    private int insertMessages(Long inboxId, int first, int last) {
+        List<MessageInput> messageInputs =
+            rangeClosed(first, last).mapToObj(m -> new MessageInput("Message " + m, "M" + m + " " + content())).collect(toList());
+        return messageService.insertAll(inboxId, messageInputs).size();
     }
 
-    private void insert(Long inboxId, MessageInput messageInput) {
-        Message message = messageService.insert(inboxId, messageInput);
-        log.debug("Inserted message '{}'.", message);
+    private String content() {
+        // RandomStringUtils shares a single Random by default, which the seeding threads would contend on.
+        return random(startupProperties.getContentLength(), 0, 0, true, false, null, ThreadLocalRandom.current());
     }
+
+    static int[] distribute(long total, int buckets, double skew) {
+        double[] weights = new double[buckets];
+        double sum = 0;
+        for (int i = 0; i < buckets; i++) {
+            weights[i] = 1 / pow(i + 1, skew);
+            sum += weights[i];
+        }
+
+        int[] counts = new int[buckets];
+        long remaining = total;
+        for (int i = 0; i < buckets; i++) {
+            counts[i] = (int) (total * weights[i] / sum);
+            remaining -= counts[i];
+        }
+        for (int i = 0; remaining > 0; i = (i + 1) % buckets, remaining--) {
+            counts[i]++;
+        }
+        return counts;
+    }
+
 }
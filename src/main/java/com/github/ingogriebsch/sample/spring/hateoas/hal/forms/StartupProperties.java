@@ -0,0 +1,38 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("startup")
+@Data
+public class StartupProperties {
+
+    private int inboxes = 3;
+    // The average number of messages per inbox, the skew decides how the total is distributed over the inboxes.
+    private int messagesPerInbox = 5;
+    private int contentLength = 12;
+    // Zipf exponent of the message distribution, zero distributes the messages evenly.
+    private double skew;
+    private int batchSize = 1000;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+}
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static com.google.common.collect.Iterators.transform;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Function;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.hateoas.PagedModel.PageMetadata;
+import org.springframework.hateoas.RepresentationModel;
+
+public class StreamingPagedModel<S, T extends RepresentationModel<T>> extends RepresentationModel<StreamingPagedModel<S, T>> {
+
+    @Getter
+    private final String resource;
+    private final Collection<S> source;
+    private final Function<? super S, T> assembler;
+    @Getter
+    private final PageMetadata metadata;
+
+    private StreamingPagedModel(String resource, Collection<S> source, Function<? super S, T> assembler, PageMetadata metadata) {
+        this.resource = resource;
+        this.source = source;
+        this.assembler = assembler;
+        this.metadata = metadata;
+    }
+
+    // The items are assembled while the model is written, so the serializer records their assembly for the given resource.
+    public static <S, T extends RepresentationModel<T>> StreamingPagedModel<S, T> of(@NonNull String resource,
+        @NonNull PagedModel<?> pagedModel, @NonNull Collection<S> source, @NonNull Function<? super S, T> assembler) {
+        return new StreamingPagedModel<>(resource, source, assembler, pagedModel.getMetadata()).add(pagedModel.getLinks());
+    }
+
+    public boolean hasContent() {
+        return !source.isEmpty();
+    }
+
+    public Iterator<T> iterator() {
+        return transform(source.iterator(), assembler::apply);
+    }
+
+}
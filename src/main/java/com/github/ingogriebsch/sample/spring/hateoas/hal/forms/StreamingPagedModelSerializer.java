@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.ASSEMBLY;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import lombok.NonNull;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.HalLinkRelation;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule.HalLinkListSerializer;
+import org.springframework.hateoas.mediatype.hal.forms.HalFormsTemplate;
+import org.springframework.hateoas.server.LinkRelationProvider;
+import org.springframework.hateoas.server.mvc.RepresentationModelProcessorInvoker;
+
+public class StreamingPagedModelSerializer extends StdSerializer<StreamingPagedModel<?, ?>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LinkRelationProvider linkRelationProvider;
+    private final CurieProvider curieProvider;
+    private final Supplier<RepresentationModelProcessorInvoker> processorInvoker;
+    private final HalFormsTemplateRegistry halFormsTemplateRegistry;
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean hal;
+
+    private StreamingPagedModelSerializer(LinkRelationProvider linkRelationProvider, CurieProvider curieProvider,
+        Supplier<RepresentationModelProcessorInvoker> processorInvoker, HalFormsTemplateRegistry halFormsTemplateRegistry,
+        PipelineMetrics pipelineMetrics, boolean hal) {
+        super(StreamingPagedModel.class, false);
+        this.linkRelationProvider = linkRelationProvider;
+        this.curieProvider = curieProvider;
+        this.processorInvoker = processorInvoker;
+        this.halFormsTemplateRegistry = halFormsTemplateRegistry;
+        this.pipelineMetrics = pipelineMetrics;
+        this.hal = hal;
+    }
+
+    public static StreamingPagedModelSerializer json(@NonNull Supplier<RepresentationModelProcessorInvoker> processorInvoker,
+        PipelineMetrics pipelineMetrics) {
+        return new StreamingPagedModelSerializer(null, null, processorInvoker, null, pipelineMetrics, false);
+    }
+
+    public static StreamingPagedModelSerializer hal(@NonNull LinkRelationProvider linkRelationProvider,
+        @NonNull CurieProvider curieProvider, @NonNull Supplier<RepresentationModelProcessorInvoker> processorInvoker,
+        PipelineMetrics pipelineMetrics) {
+        return new StreamingPagedModelSerializer(linkRelationProvider, curieProvider, processorInvoker, null, pipelineMetrics,
+            true);
+    }
+
+    public static StreamingPagedModelSerializer halForms(@NonNull LinkRelationProvider linkRelationProvider,
+        @NonNull CurieProvider curieProvider, @NonNull Supplier<RepresentationModelProcessorInvoker> processorInvoker,
+        @NonNull HalFormsTemplateRegistry halFormsTemplateRegistry, PipelineMetrics pipelineMetrics) {
+        return new StreamingPagedModelSerializer(linkRelationProvider, curieProvider, processorInvoker, halFormsTemplateRegistry,
+            pipelineMetrics, true);
+    }
+
+    @Override
+    public void serialize(StreamingPagedModel<?, ?> value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(value);
+        if (hal) {
+            writeEmbedded(value, gen, provider);
+            if (value.hasLinks()) {
+                gen.writeFieldName("_links");
+                provider.serializerInstance(null, HalLinkListSerializer.class).serialize(value.getLinks(), gen, provider);
+            }
+            if (halFormsTemplateRegistry != null) {
+                Map<String, HalFormsTemplate> templates = halFormsTemplateRegistry.findTemplates(value);
+                if (!templates.isEmpty()) {
+                    provider.defaultSerializeField("_templates", templates, gen);
+                }
+            }
+        } else {
+            provider.defaultSerializeField("links", value.getLinks(), gen);
+            gen.writeArrayFieldStart("content");
+            writeContent(value, value.iterator(), gen, provider);
+            gen.writeEndArray();
+        }
+        if (value.getMetadata() != null) {
+            provider.defaultSerializeField("page", value.getMetadata(), gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeEmbedded(StreamingPagedModel<?, ?> value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+        if (!value.hasContent()) {
+            return;
+        }
+
+        Iterator<? extends RepresentationModel<?>> content = value.iterator();
+        RepresentationModel<?> first = next(value, content);
+
+        gen.writeObjectFieldStart("_embedded");
+        gen.writeArrayFieldStart(collectionRelFor(first.getClass()));
+        writeItem(first, gen, provider);
+        writeContent(value, content, gen, provider);
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private void writeContent(StreamingPagedModel<?, ?> value, Iterator<? extends RepresentationModel<?>> content,
+        JsonGenerator gen, SerializerProvider provider) throws IOException {
+        while (content.hasNext()) {
+            writeItem(next(value, content), gen, provider);
+        }
+    }
+
+    // Assembling an item is timed on its own, so it is not reported as part of the serialization around it.
+    private RepresentationModel<?> next(StreamingPagedModel<?, ?> value, Iterator<? extends RepresentationModel<?>> content) {
+        return pipelineMetrics != null ? pipelineMetrics.record(value.getResource(), ASSEMBLY, content::next) : content.next();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void writeItem(RepresentationModel item, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        provider.defaultSerializeValue(processorInvoker.get().invokeProcessorsFor(item), gen);
+    }
+
+    private String collectionRelFor(Class<?> type) {
+        LinkRelation rel = linkRelationProvider.getCollectionResourceRelFor(type);
+        return (curieProvider != CurieProvider.NONE ? curieProvider.getNamespacedRelFor(rel) : HalLinkRelation.of(rel)).value();
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Versioned;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -26,9 +27,10 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @NoArgsConstructor
-public class Inbox {
+public class Inbox implements Versioned {
 
     private Long id;
     private String name;
     private String description;
+    private long version;
 }
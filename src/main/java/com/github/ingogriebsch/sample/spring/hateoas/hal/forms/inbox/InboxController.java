@@ -19,24 +19,43 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import static java.lang.Math.min;
 import static java.util.stream.Collectors.toList;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.decode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags.okUnlessNotModified;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags.versionOf;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.ASSEMBLY;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.CONVERSION;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.LOOKUP;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.http.ResponseEntity.status;
 
 import java.util.List;
+import java.util.Optional;
 
 import javax.validation.Valid;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.StreamingPagedModel;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.hateoas.PagedModel;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -44,7 +63,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RequiredArgsConstructor
 @RestController
@@ -56,19 +78,65 @@ public class InboxController {
     static final String PATH_UPDATE = PATH_FIND_ONE;
     static final String PATH_DELETE = PATH_FIND_ONE;
 
+    static final String PARAM_AFTER = "after";
+    static final String PARAM_NAME = "name";
+    static final String PARAM_SIZE = "size";
+    static final String DEFAULT_SIZE = "20";
+    static final int MAX_SIZE = 2000;
+    static final String RESOURCE = "inboxes";
+
     @NonNull
     private final InboxService inboxService;
     @NonNull
     private final InboxModelAssembler inboxModelAssembler;
+    @NonNull
+    private final PipelineMetrics pipelineMetrics;
 
     @GetMapping(path = PATH_FIND_ALL)
-    public ResponseEntity<PagedModel<InboxModel>> findAll(Pageable pageable) {
-        return ok(inboxModelAssembler.toPagedModel(convert(inboxService.findAll(pageable))));
+    public ResponseEntity<StreamingPagedModel<InboxProjection, InboxModel>>
+        findAll(@RequestParam(name = PARAM_NAME, required = false) String name, Pageable pageable, WebRequest request) {
+        Page<Inbox> inboxes;
+        try {
+            inboxes = pipelineMetrics.record(RESOURCE, LOOKUP, () -> inboxService.findAll(name, pageable));
+        } catch (IllegalArgumentException e) {
+            return badRequest().build();
+        }
+        pipelineMetrics.recordPage(RESOURCE, inboxes.getNumberOfElements());
+
+        ResponseEntity<StreamingPagedModel<InboxProjection, InboxModel>> response =
+            okUnlessNotModified(request, EntityTags.of(inboxes), () -> {
+                Page<InboxProjection> projections = pipelineMetrics.record(RESOURCE, CONVERSION, () -> convert(inboxes));
+                return pipelineMetrics.record(RESOURCE, ASSEMBLY, () -> inboxModelAssembler.toStreamingModel(name, projections));
+            });
+        if (response.getStatusCode() == NOT_MODIFIED) {
+            pipelineMetrics.recordNotModified(RESOURCE);
+        }
+        return response;
+    }
+
+    @GetMapping(path = PATH_FIND_ALL, params = PARAM_AFTER)
+    public ResponseEntity<CollectionModel<InboxModel>> findAllAfter(@RequestParam(PARAM_AFTER) String after,
+        @RequestParam(name = PARAM_SIZE, defaultValue = DEFAULT_SIZE) int size) {
+        Long afterId;
+        try {
+            afterId = decode(after);
+        } catch (IllegalArgumentException e) {
+            return badRequest().build();
+        }
+        if (size < 1) {
+            return badRequest().build();
+        }
+
+        return ok(inboxModelAssembler.toCursorModel(convert(inboxService.findAllAfter(afterId, min(size, MAX_SIZE))), after));
     }
 
     @GetMapping(path = PATH_FIND_ONE)
-    public ResponseEntity<InboxModel> findOne(@PathVariable Long id) {
-        return inboxService.findOne(id).map(p -> ok(inboxModelAssembler.toModel(convert(p)))).orElse(notFound().build());
+    public ResponseEntity<InboxModel> findOne(@PathVariable Long id, WebRequest request) {
+        return pipelineMetrics.record(RESOURCE, LOOKUP, () -> inboxService.findOne(id))
+            .map(i -> okUnlessNotModified(request, EntityTags.of(i), () -> {
+                InboxProjection projection = pipelineMetrics.record(RESOURCE, CONVERSION, () -> convert(i));
+                return pipelineMetrics.record(RESOURCE, ASSEMBLY, () -> inboxModelAssembler.toModel(projection));
+            })).orElse(notFound().build());
     }
 
     @PostMapping(path = PATH_INSERT, consumes = APPLICATION_JSON_VALUE)
@@ -77,20 +145,37 @@ public class InboxController {
     }
 
     @PutMapping(path = PATH_UPDATE, consumes = APPLICATION_JSON_VALUE)
-    public ResponseEntity<InboxModel> update(@PathVariable Long id, @RequestBody @Valid InboxInput inboxInput) {
-        return inboxService.update(id, inboxInput).map(p -> ok(inboxModelAssembler.toModel(convert(p))))
+    public ResponseEntity<InboxModel> update(@PathVariable Long id, @RequestBody @Valid InboxInput inboxInput,
+        @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        Optional<Inbox> inbox;
+        try {
+            inbox = inboxService.update(id, versionOf(ifMatch, id), inboxInput);
+        } catch (IllegalArgumentException | VersionConflictException e) {
+            return status(PRECONDITION_FAILED).build();
+        }
+        return inbox.map(i -> ok().eTag(EntityTags.of(i)).varyBy(ACCEPT).body(inboxModelAssembler.toModel(convert(i))))
             .orElse(notFound().build());
     }
 
     @DeleteMapping(path = PATH_DELETE)
-    public ResponseEntity<Void> delete(@PathVariable Long id) {
-        return inboxService.delete(id) ? ok().build() : notFound().build();
+    public ResponseEntity<Void> delete(@PathVariable Long id, @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        boolean deleted;
+        try {
+            deleted = inboxService.delete(id, versionOf(ifMatch, id));
+        } catch (IllegalArgumentException | VersionConflictException e) {
+            return status(PRECONDITION_FAILED).build();
+        }
+        return deleted ? ok().build() : notFound().build();
     }
 
     private static Page<InboxProjection> convert(Page<Inbox> inboxes) {
         return new PageImpl<>(convert(inboxes.getContent()), inboxes.getPageable(), inboxes.getTotalElements());
     }
 
+    private static Slice<InboxProjection> convert(Slice<Inbox> inboxes) {
+        return new SliceImpl<>(convert(inboxes.getContent()), inboxes.getPageable(), inboxes.hasNext());
+    }
+
     private static List<InboxProjection> convert(List<Inbox> content) {
         return content.stream().map(i -> convert(i)).collect(toList());
     }
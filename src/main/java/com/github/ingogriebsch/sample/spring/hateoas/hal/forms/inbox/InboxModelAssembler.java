@@ -19,19 +19,25 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.withoutContent;
+import static org.springframework.hateoas.IanaLinkRelations.NEXT;
 import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.UriTemplate.of;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.afford;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-import static org.springframework.web.util.UriComponentsBuilder.fromUri;
+import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
+import java.util.List;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.LinkTemplate;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.StreamingPagedModel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
@@ -40,6 +46,13 @@ import org.springframework.web.util.UriComponentsBuilder;
 @RequiredArgsConstructor
 public class InboxModelAssembler implements RepresentationModelAssembler<InboxProjection, InboxModel> {
 
+    private static final LinkTemplate FIND_ALL = LinkTemplate.of(InboxController.class, "findAll");
+    private static final LinkTemplate FIND_ALL_AFTER = LinkTemplate.of(InboxController.class, "findAllAfter");
+    private static final LinkTemplate FIND_ONE = LinkTemplate.of(InboxController.class, "findOne");
+    private static final LinkTemplate INSERT = LinkTemplate.of(InboxController.class, "insert");
+    private static final LinkTemplate UPDATE = LinkTemplate.of(InboxController.class, "update");
+    private static final LinkTemplate DELETE = LinkTemplate.of(InboxController.class, "delete");
+
     @NonNull
     private final PagedResourcesAssembler<InboxProjection> pagedResourcesAssembler;
     @NonNull
@@ -51,25 +64,57 @@ public class InboxModelAssembler implements RepresentationModelAssembler<InboxPr
     }
 
     public PagedModel<InboxModel> toPagedModel(@NonNull Page<InboxProjection> source) {
-        return pagedResourcesAssembler.toModel(source, this, pagedModelSelfLink(source));
+        return toPagedModel(null, source);
+    }
+
+    public PagedModel<InboxModel> toPagedModel(String name, @NonNull Page<InboxProjection> source) {
+        return pagedResourcesAssembler.toModel(source, this, pagedModelSelfLink(name, source));
+    }
+
+    public StreamingPagedModel<InboxProjection, InboxModel> toStreamingModel(@NonNull Page<InboxProjection> source) {
+        return toStreamingModel(null, source);
+    }
+
+    public StreamingPagedModel<InboxProjection, InboxModel> toStreamingModel(String name, @NonNull Page<InboxProjection> source) {
+        return StreamingPagedModel.of(InboxController.RESOURCE, toPagedModel(name, withoutContent(source)), source.getContent(),
+            this::toModel);
+    }
+
+    public CollectionModel<InboxModel> toCursorModel(@NonNull Slice<InboxProjection> source, String after) {
+        CollectionModel<InboxModel> model = toCollectionModel(source.getContent());
+        model.add(cursorModelSelfLink(after, source.getSize()));
+        if (source.hasNext()) {
+            List<InboxProjection> content = source.getContent();
+            model.add(cursorModelNextLink(encode(content.get(content.size() - 1).getId()), source.getSize()));
+        }
+        return model;
     }
 
-    private Link pagedModelSelfLink(Page<InboxProjection> source) {
+    private Link pagedModelSelfLink(String name, Page<InboxProjection> source) {
         Pageable pageable = source.getPageable();
-        Link selfLink = linkTo(methodOn(InboxController.class).findAll(null)).withSelfRel();
+        String href = FIND_ALL.expand(name);
 
-        UriComponentsBuilder builder = fromUri(selfLink.getTemplate().expand());
+        UriComponentsBuilder builder = fromUriString(href);
         pageableResolver.enhance(builder, null, pageable);
 
-        return new Link(of(builder.build().toString()), SELF).andAffordances(selfLink.getAffordances())
-            .andAffordance(afford(methodOn(InboxController.class).insert(null)));
+        return new Link(of(builder.build().toString()), SELF).andAffordances(FIND_ALL.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand()));
+    }
+
+    private static Link cursorModelSelfLink(String after, int size) {
+        String href = FIND_ALL_AFTER.expand(after, size);
+        return new Link(href, SELF).andAffordances(FIND_ALL_AFTER.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand()));
+    }
+
+    private static Link cursorModelNextLink(String after, int size) {
+        return FIND_ALL_AFTER.link(NEXT, after, size);
     }
 
     private static Link modelSelfLink(Long id) {
-        Link self = linkTo(methodOn(InboxController.class).findOne(id)).withSelfRel();
-        self = self.andAffordance(afford(methodOn(InboxController.class).update(id, null)));
-        self = self.andAffordance(afford(methodOn(InboxController.class).delete(id)));
-        return self;
+        String href = FIND_ONE.expand(id);
+        return new Link(href, SELF).andAffordances(FIND_ONE.affordances(href)).andAffordances(UPDATE.affordances(href))
+            .andAffordances(DELETE.affordances(href));
     }
 
     private static InboxModel instantiate(InboxProjection source) {
@@ -19,7 +19,10 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.HalFormsTemplateRegistry;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
 import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
@@ -28,6 +31,11 @@ import org.springframework.data.web.PagedResourcesAssembler;
 @Configuration
 public class InboxModelHateoasConfiguration {
 
+    @Autowired
+    public void registerTemplates(@NonNull HalFormsTemplateRegistry halFormsTemplateRegistry) {
+        halFormsTemplateRegistry.register(InboxInput.class);
+    }
+
     @Bean
     public InboxModelAssembler inboxModelAssembler(@NonNull PagedResourcesAssembler<InboxProjection> pagedResourcesAssembler,
         @NonNull HateoasPageableHandlerMethodArgumentResolver hateoasPageableHandlerMethodArgumentResolver) {
@@ -35,9 +43,10 @@ public class InboxModelHateoasConfiguration {
     }
 
     @Bean
-    public InboxModelProcessor
-        inboxModelProcessor(@NonNull HateoasPageableHandlerMethodArgumentResolver hateoasPageableHandlerMethodArgumentResolver) {
-        return new InboxModelProcessor(hateoasPageableHandlerMethodArgumentResolver);
+    public InboxModelProcessor inboxModelProcessor(
+        @NonNull HateoasPageableHandlerMethodArgumentResolver hateoasPageableHandlerMethodArgumentResolver,
+        @NonNull PipelineMetrics pipelineMetrics) {
+        return new InboxModelProcessor(hateoasPageableHandlerMethodArgumentResolver, pipelineMetrics);
     }
 
 }
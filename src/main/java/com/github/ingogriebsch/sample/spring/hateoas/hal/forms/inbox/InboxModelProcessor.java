@@ -19,12 +19,13 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.PROCESSING;
 import static org.springframework.hateoas.UriTemplate.of;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-import static org.springframework.web.util.UriComponentsBuilder.fromUri;
+import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.LinkTemplate;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
@@ -39,21 +40,25 @@ public class InboxModelProcessor implements RepresentationModelProcessor<InboxMo
 
     static final String REL_MESSAGES = "messages";
 
+    private static final LinkTemplate MESSAGES = LinkTemplate.of(MessageController.class, "findAll");
+
     @NonNull
     private final HateoasPageableHandlerMethodArgumentResolver pageableResolver;
+    @NonNull
+    private final PipelineMetrics pipelineMetrics;
 
     @Override
     public InboxModel process(@NonNull InboxModel model) {
-        return model.add(messagesLink(model.getId()));
+        return pipelineMetrics.record(InboxController.RESOURCE, PROCESSING, () -> model.add(messagesLink(model.getId())));
     }
 
     private Link messagesLink(Long id) {
-        Link messagesLink = linkTo(methodOn(MessageController.class).findAll(id, null)).withRel(REL_MESSAGES);
+        String href = MESSAGES.expand(id);
 
-        UriComponentsBuilder builder = fromUri(messagesLink.getTemplate().expand());
+        UriComponentsBuilder builder = fromUriString(href);
         TemplateVariables templateVariables = pageableResolver.getPaginationTemplateVariables(null, builder.build());
 
-        UriTemplate template = of(messagesLink.getHref()).with(templateVariables);
+        UriTemplate template = of(href).with(templateVariables);
         return new Link(template.toString(), REL_MESSAGES);
     }
 
@@ -19,71 +19,194 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
-import static java.util.Optional.empty;
-import static java.util.Optional.of;
-
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.orderOf;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toPage;
-import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.MoreCollectors.toOptional;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toSlice;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 
-import java.util.Collection;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.ColumnLayout;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IdGenerator;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore.Snapshot;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.SequenceIdGenerator;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.SortedIndex;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.CheckpointOutput;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Checkpointable;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.InMemoryStorage;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Journal;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Recovery;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Storage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
 
 @Service
-public class InboxService {
+public class InboxService implements Checkpointable, MeterBinder {
+
+    static final String SORT_ID = "id";
+    static final String SORT_NAME = "name";
+
+    static final String INBOXES_GAUGE = "inboxes";
+
+    private static final String CHECKPOINT_NAME = "inboxes";
+
+    private static final SortedIndex<Inbox> INBOXES_BY_NAME = new SortedIndex<>(Inbox::getName);
+
+    private final IndexedStore<Inbox> inboxes = new IndexedStore<>(ColumnLayout.objects(), INBOXES_BY_NAME);
+    private final IdGenerator idGenerator;
+    private final Storage storage;
+    private final Journal journal;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InboxService() {
+        this(new SequenceIdGenerator());
+    }
+
+    public InboxService(@NonNull IdGenerator idGenerator) {
+        this(idGenerator, event -> {
+        });
+    }
+
+    public InboxService(@NonNull ApplicationEventPublisher eventPublisher) {
+        this(new SequenceIdGenerator(), eventPublisher);
+    }
+
+    public InboxService(@NonNull IdGenerator idGenerator, @NonNull ApplicationEventPublisher eventPublisher) {
+        this.idGenerator = idGenerator;
+        this.storage = new InMemoryStorage();
+        this.journal = new Journal(storage);
+        this.eventPublisher = eventPublisher;
+    }
 
-    private final List<Inbox> inboxes = newArrayList();
+    @Autowired
+    public InboxService(@NonNull Storage storage, @NonNull ApplicationEventPublisher eventPublisher) {
+        this.storage = storage;
+        this.journal = new Journal(storage);
+        this.eventPublisher = eventPublisher;
+        this.idGenerator = new SequenceIdGenerator(recover());
+    }
 
     public Page<Inbox> findAll(@NonNull Pageable pageable) {
-        return toPage(newArrayList(inboxes), pageable);
+        return findAll(null, pageable);
+    }
+
+    public Page<Inbox> findAll(String name, @NonNull Pageable pageable) {
+        Optional<Order> order = orderOf(pageable.getSort(), SORT_ID, SORT_NAME);
+        Direction direction = order.map(Order::getDirection).orElse(ASC);
+        if (name != null) {
+            return toPage(inboxes, INBOXES_BY_NAME, name, direction, pageable);
+        }
+        if (order.filter(o -> SORT_NAME.equals(o.getProperty())).isPresent()) {
+            return toPage(inboxes, INBOXES_BY_NAME, direction, pageable);
+        }
+        return toPage(inboxes, direction, pageable);
+    }
+
+    public Slice<Inbox> findAllAfter(Long after, int size) {
+        return toSlice(inboxes, after, size);
     }
 
     public Optional<Inbox> findOne(@NonNull Long id) {
-        return inboxes.stream().filter(p -> p.getId().equals(id)).limit(1).findAny();
+        return inboxes.get(id);
     }
 
     public Inbox insert(@NonNull InboxInput inboxInput) {
         Inbox inbox = new Inbox();
-        inbox.setId(nextId(inboxes));
-        inbox = merge(inbox, inboxInput);
-        inboxes.add(inbox);
-        return inbox;
+        inbox.setId(idGenerator.next());
+        merge(inbox, inboxInput);
+        return journal.apply(inbox.getId(), () -> inbox, InboxSaved::new, inserted -> inboxes.put(inserted.getId(), inserted));
     }
 
     public Optional<Inbox> update(@NonNull Long id, @NonNull InboxInput inboxInput) {
-        Optional<Inbox> inbox = inboxes.stream().filter(p -> id.equals(p.getId())).collect(toOptional());
-        if (!inbox.isPresent()) {
-            return empty();
-        }
+        return update(id, null, inboxInput);
+    }
 
-        return of(merge(inbox.get(), inboxInput));
+    public Optional<Inbox> update(@NonNull Long id, Long expectedVersion, @NonNull InboxInput inboxInput) {
+        return journal.apply(id, () -> inboxes.get(id).map(inbox -> {
+            inbox.checkVersion(expectedVersion);
+            return merge(new Inbox(inbox.getId(), null, null, inbox.getVersion() + 1), inboxInput);
+        }), updated -> updated.map(InboxSaved::new).orElse(null), updated -> updated.ifPresent(inbox -> inboxes.put(id, inbox)));
     }
 
     public boolean delete(@NonNull Long id) {
-        return inboxes.removeIf(p -> p.getId().equals(id));
+        return delete(id, null);
     }
 
-    private static Inbox merge(Inbox inbox, @NonNull InboxInput inboxInput) {
-        inbox.setName(inboxInput.getName());
-        inbox.setDescription(inboxInput.getDescription());
-        return inbox;
+    public boolean delete(@NonNull Long id, Long expectedVersion) {
+        boolean deleted = journal.apply(id, () -> inboxes.get(id).map(inbox -> {
+            inbox.checkVersion(expectedVersion);
+            return inbox;
+        }), removed -> removed.map(inbox -> new InboxRemoved(id)).orElse(null),
+            removed -> removed.ifPresent(inbox -> inboxes.remove(id))).isPresent();
+        if (deleted) {
+            eventPublisher.publishEvent(new InboxDeletedEvent(id));
+        }
+        return deleted;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry meterRegistry) {
+        Gauge.builder(INBOXES_GAUGE, inboxes, IndexedStore::size).register(meterRegistry);
+    }
+
+    @Override
+    public String getCheckpointName() {
+        return CHECKPOINT_NAME;
     }
 
-    private static Long nextId(Collection<Inbox> inboxes) {
-        Long id = 0L;
-        for (Inbox inbox : inboxes) {
-            Long inboxId = inbox.getId();
-            if (id < inboxId) {
-                id = inboxId;
+    @Override
+    public void writeCheckpoint(@NonNull CheckpointOutput output) throws IOException {
+        Snapshot<Inbox> snapshot = inboxes.snapshot();
+        output.writeLong(idGenerator.current());
+        output.writeLong(snapshot.size());
+        for (Inbox inbox : snapshot) {
+            output.writeLong(inbox.getId());
+            output.writeString(inbox.getName());
+            output.writeString(inbox.getDescription());
+            output.writeLong(inbox.getVersion());
+        }
+    }
+
+    private long recover() {
+        Recovery<Inbox> recovery = new Recovery<>();
+        long position = storage.restore(CHECKPOINT_NAME, input -> {
+            recovery.reserved(input.readLong());
+            for (long count = input.readLong(); count > 0; count--) {
+                recovery.restored(new Inbox(input.readLong(), input.readString(), input.readString(), input.readLong()));
             }
+        });
+        storage.replay(position, mutation -> {
+            if (mutation instanceof InboxSaved) {
+                recovery.saved(((InboxSaved) mutation).getInbox());
+            } else if (mutation instanceof InboxRemoved) {
+                recovery.removed(((InboxRemoved) mutation).getId());
+            }
+        });
+
+        List<Inbox> recovered = recovery.values();
+        if (!recovered.isEmpty()) {
+            inboxes.putAll(recovered, Inbox::getId);
         }
-        return id + 1L;
+        return recovery.maxId();
+    }
+
+    private static Inbox merge(Inbox inbox, @NonNull InboxInput inboxInput) {
+        inbox.setName(inboxInput.getName());
+        inbox.setDescription(inboxInput.getDescription());
+        return inbox;
     }
 
 }
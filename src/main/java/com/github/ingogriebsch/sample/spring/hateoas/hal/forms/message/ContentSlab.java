@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.nio.ByteBuffer.allocateDirect;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+final class ContentSlab {
+
+    static final int HEADER_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private int allocated;
+    private int live;
+    private boolean queued;
+
+    ContentSlab(int capacity) {
+        this.buffer = allocateDirect(capacity);
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int remaining() {
+        return buffer.capacity() - allocated;
+    }
+
+    int live() {
+        return live;
+    }
+
+    void retain(int offset) {
+        live += sizeOf(offset);
+    }
+
+    void release(int offset) {
+        live -= sizeOf(offset);
+    }
+
+    boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    int allocate(int size) {
+        int offset = allocated;
+        allocated += size;
+        return offset;
+    }
+
+    // Every record starts with the id of its message, so the owner of a record can be found without an index.
+    int writeHeader(int offset, long id) {
+        buffer.putLong(offset, id);
+        return offset + HEADER_SIZE;
+    }
+
+    int write(int offset, byte[] bytes) {
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset);
+        if (bytes == null) {
+            target.putInt(-1);
+            return offset + 4;
+        }
+        target.putInt(bytes.length).put(bytes);
+        return offset + 4 + bytes.length;
+    }
+
+    String read(int offset) {
+        int length = buffer.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset + 4);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    int next(int offset) {
+        return offset + 4 + Math.max(buffer.getInt(offset), 0);
+    }
+
+    void forEach(RecordConsumer consumer) {
+        for (int record = 0; record < allocated; record = next(next(record + HEADER_SIZE))) {
+            consumer.accept(buffer.getLong(record), record + HEADER_SIZE);
+        }
+    }
+
+    private int sizeOf(int offset) {
+        return next(next(offset)) - offset + HEADER_SIZE;
+    }
+
+    interface RecordConsumer {
+
+        void accept(long id, int offset);
+    }
+
+}
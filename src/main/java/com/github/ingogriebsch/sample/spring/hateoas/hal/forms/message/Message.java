@@ -19,17 +19,86 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
-import lombok.AllArgsConstructor;
+import static lombok.AccessLevel.NONE;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Versioned;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
-@AllArgsConstructor
 @Data
 @NoArgsConstructor
-public class Message {
+public class Message implements Versioned {
 
     private Long id;
     private String title;
     private String content;
+    private long version;
+
+    @EqualsAndHashCode.Exclude
+    @Getter(NONE)
+    @Setter(NONE)
+    @ToString.Exclude
+    private ContentSlab slab;
+    @EqualsAndHashCode.Exclude
+    @Getter(NONE)
+    @Setter(NONE)
+    @ToString.Exclude
+    private int offset;
+
+    public Message(Long id, String title, String content, long version) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.version = version;
+    }
+
+    public String getTitle() {
+        return slab != null ? slab.read(offset) : title;
+    }
+
+    public void setTitle(String title) {
+        moveToHeap();
+        this.title = title;
+    }
+
+    public String getContent() {
+        return slab != null ? slab.read(slab.next(offset)) : content;
+    }
+
+    public void setContent(String content) {
+        moveToHeap();
+        this.content = content;
+    }
+
+    boolean isOffHeap() {
+        return slab != null;
+    }
+
+    ContentSlab slab() {
+        return slab;
+    }
+
+    int offset() {
+        return offset;
+    }
+
+    void moveTo(ContentSlab slab, int offset) {
+        this.slab = slab;
+        this.offset = offset;
+        this.title = null;
+        this.content = null;
+    }
+
+    private void moveToHeap() {
+        if (slab != null) {
+            title = slab.read(offset);
+            content = slab.read(slab.next(offset));
+            slab = null;
+        }
+    }
 
 }
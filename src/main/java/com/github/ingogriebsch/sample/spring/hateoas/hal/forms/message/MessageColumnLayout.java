@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.ColumnLayout;
+
+final class MessageColumnLayout implements ColumnLayout<Message> {
+
+    static final MessageColumnLayout INSTANCE = new MessageColumnLayout();
+
+    private MessageColumnLayout() {
+    }
+
+    @Override
+    public Object allocate(int size) {
+        return new Columns(size);
+    }
+
+    @Override
+    public Message get(Object columns, int index, long id) {
+        Columns source = (Columns) columns;
+        Message message = new Message();
+        message.setId(id);
+        message.setVersion(source.versions[index]);
+        message.moveTo(source.slabs[index], source.offsets[index]);
+        return message;
+    }
+
+    @Override
+    public void set(Object columns, int index, Message message) {
+        checkArgument(message.isOffHeap(), "Message must be moved off-heap before it is stored!");
+        Columns target = (Columns) columns;
+        target.versions[index] = message.getVersion();
+        target.slabs[index] = message.slab();
+        target.offsets[index] = message.offset();
+    }
+
+    @Override
+    public void copy(Object source, int sourceIndex, Object target, int targetIndex, int length) {
+        Columns from = (Columns) source;
+        Columns to = (Columns) target;
+        System.arraycopy(from.versions, sourceIndex, to.versions, targetIndex, length);
+        System.arraycopy(from.slabs, sourceIndex, to.slabs, targetIndex, length);
+        System.arraycopy(from.offsets, sourceIndex, to.offsets, targetIndex, length);
+    }
+
+    private static final class Columns {
+
+        private final long[] versions;
+        private final ContentSlab[] slabs;
+        private final int[] offsets;
+
+        private Columns(int size) {
+            this.versions = new long[size];
+            this.slabs = new ContentSlab[size];
+            this.offsets = new int[size];
+        }
+    }
+
+}
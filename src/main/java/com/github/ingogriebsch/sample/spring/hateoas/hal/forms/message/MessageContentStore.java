@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.ContentSlab.HEADER_SIZE;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import lombok.NonNull;
+
+// Holds the content of the messages of a single inbox and is guarded by the lock of its segment, so writers to different
+// inboxes never share an allocator. The slabs are dropped together with the segment once the inbox is deleted.
+class MessageContentStore {
+
+    static final int SLAB_SIZE = 1 << 22;
+    // Slabs start small and double with every one retired, so an inbox holding few messages holds little memory as well.
+    static final int INITIAL_SLAB_SIZE = 1 << 16;
+    // A retired slab whose live bytes fall below this share of its capacity gets its remaining messages copied forward.
+    static final double SPARSE_RATIO = 0.25;
+
+    private final int slabSize;
+    private final Queue<ContentSlab> sparseSlabs = new ArrayDeque<>();
+    private volatile boolean sparse;
+    private ContentSlab current;
+
+    MessageContentStore() {
+        this(SLAB_SIZE);
+    }
+
+    MessageContentStore(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    // Slabs are never freed explicitly. Every stored message references its slab, so a slab is reclaimed together with the
+    // last message living in it, and readers holding an older snapshot can never observe reused memory.
+    Message store(@NonNull Message message) {
+        if (message.isOffHeap()) {
+            return message;
+        }
+
+        byte[] title = encode(message.getTitle());
+        byte[] content = encode(message.getContent());
+        int size = HEADER_SIZE + 8 + (title != null ? title.length : 0) + (content != null ? content.length : 0);
+
+        if (current == null || current.remaining() < size) {
+            ContentSlab retired = current;
+            current = new ContentSlab(max(min(retired != null ? retired.capacity() * 2 : INITIAL_SLAB_SIZE, slabSize), size));
+            if (retired != null) {
+                offerIfSparse(retired);
+            }
+        }
+        int offset = current.writeHeader(current.allocate(size), message.getId());
+        current.write(current.write(offset, title), content);
+
+        message.moveTo(current, offset);
+        return message;
+    }
+
+    // Only published messages count as live, so content stored for a write which was rejected is reclaimed as well.
+    void retain(@NonNull Message message) {
+        if (message.isOffHeap()) {
+            message.slab().retain(message.offset());
+        }
+    }
+
+    void release(@NonNull Message message) {
+        if (message.isOffHeap()) {
+            message.slab().release(message.offset());
+            if (message.slab() != current) {
+                offerIfSparse(message.slab());
+            }
+        }
+    }
+
+    // May be asked without holding the lock, a slab offered afterwards is reported by the writer which offered it.
+    boolean hasSparse() {
+        return sparse;
+    }
+
+    ContentSlab pollSparse() {
+        try {
+            for (ContentSlab slab = sparseSlabs.poll(); slab != null; slab = sparseSlabs.poll()) {
+                // Messages count as live once they are published, so a slab may have filled up after it was offered.
+                if (isSparse(slab)) {
+                    return slab;
+                }
+                slab.setQueued(false);
+            }
+            return null;
+        } finally {
+            sparse = !sparseSlabs.isEmpty();
+        }
+    }
+
+    void compacted(@NonNull ContentSlab slab) {
+        slab.setQueued(false);
+    }
+
+    private void offerIfSparse(ContentSlab slab) {
+        if (!slab.isQueued() && isSparse(slab)) {
+            slab.setQueued(true);
+            sparseSlabs.offer(slab);
+            sparse = true;
+        }
+    }
+
+    private static boolean isSparse(ContentSlab slab) {
+        return slab.live() < slab.capacity() * SPARSE_RATIO;
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(UTF_8) : null;
+    }
+
+}
@@ -19,23 +19,61 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import static java.lang.Math.min;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.decode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags.okUnlessNotModified;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags.versionOf;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.ASSEMBLY;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.CONVERSION;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.LOOKUP;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.io.ByteStreams.limit;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.PAYLOAD_TOO_LARGE;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.http.ResponseEntity.status;
+import static org.springframework.util.StringUtils.hasText;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.StreamingPagedModel;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxNotFoundException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import com.google.common.io.CountingInputStream;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -44,7 +82,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RequiredArgsConstructor
 @RestController
@@ -53,47 +94,213 @@ public class MessageController {
     static final String PATH_FIND_ALL = "/api/inboxes/{inboxId}/messages";
     static final String PATH_FIND_ONE = "/api/inboxes/{inboxId}/messages/{id}";
     static final String PATH_INSERT = PATH_FIND_ALL;
+    static final String PATH_INSERT_ALL = PATH_FIND_ALL + "/batch";
+    static final String PATH_SEARCH = PATH_FIND_ALL + "/search";
     static final String PATH_UPDATE = PATH_FIND_ONE;
     static final String PATH_DELETE = PATH_FIND_ONE;
 
+    static final String PARAM_AFTER = "after";
+    static final String PARAM_IDS = "ids";
+    static final String PARAM_QUERY = "q";
+    static final String PARAM_SIZE = "size";
+    static final String PARAM_TITLE = "title";
+    static final String DEFAULT_SIZE = "20";
+    static final int MAX_SIZE = 2000;
+    static final int MAX_BATCH_SIZE = 10_000;
+    static final int MAX_BATCH_BYTES = 16 * 1024 * 1024;
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String RESOURCE = "messages";
+
     @NonNull
     private final MessageService messageService;
     @NonNull
+    private final InboxService inboxService;
+    @NonNull
     private final MessageModelAssembler messageModelAssembler;
+    @NonNull
+    private final ObjectMapper objectMapper;
+    @NonNull
+    private final Validator validator;
+    @NonNull
+    private final PipelineMetrics pipelineMetrics;
 
     @GetMapping(path = PATH_FIND_ALL)
-    public ResponseEntity<PagedModel<MessageModel>> findAll(@PathVariable Long inboxId, Pageable pageable) {
-        return ok(messageModelAssembler.toPagedModel(inboxId, convert(inboxId, messageService.findAll(inboxId, pageable))));
+    public ResponseEntity<StreamingPagedModel<MessageProjection, MessageModel>> findAll(@PathVariable Long inboxId,
+        @RequestParam(name = PARAM_TITLE, required = false) String title, Pageable pageable, WebRequest request) {
+        Page<Message> messages;
+        try {
+            messages = pipelineMetrics.record(RESOURCE, LOOKUP, () -> messageService.findAll(inboxId, title, pageable));
+        } catch (IllegalArgumentException e) {
+            return badRequest().build();
+        }
+        pipelineMetrics.recordPage(RESOURCE, messages.getNumberOfElements());
+
+        ResponseEntity<StreamingPagedModel<MessageProjection, MessageModel>> response =
+            okUnlessNotModified(request, EntityTags.of(messages), () -> {
+                Page<MessageProjection> projections =
+                    pipelineMetrics.record(RESOURCE, CONVERSION, () -> convert(inboxId, messages));
+                return pipelineMetrics.record(RESOURCE, ASSEMBLY,
+                    () -> messageModelAssembler.toStreamingModel(inboxId, title, projections));
+            });
+        if (response.getStatusCode() == NOT_MODIFIED) {
+            pipelineMetrics.recordNotModified(RESOURCE);
+        }
+        return response;
+    }
+
+    @GetMapping(path = PATH_FIND_ALL, params = PARAM_AFTER)
+    public ResponseEntity<CollectionModel<MessageModel>> findAllAfter(@PathVariable Long inboxId,
+        @RequestParam(PARAM_AFTER) String after, @RequestParam(name = PARAM_SIZE, defaultValue = DEFAULT_SIZE) int size) {
+        Long afterId;
+        try {
+            afterId = decode(after);
+        } catch (IllegalArgumentException e) {
+            return badRequest().build();
+        }
+        if (size < 1) {
+            return badRequest().build();
+        }
+
+        Slice<Message> messages = messageService.findAllAfter(inboxId, afterId, min(size, MAX_SIZE));
+        return ok(messageModelAssembler.toCursorModel(inboxId, convert(inboxId, messages), after));
+    }
+
+    @GetMapping(path = PATH_FIND_ALL, params = { PARAM_IDS, "!" + PARAM_AFTER })
+    public ResponseEntity<CollectionModel<MessageModel>> findAllById(@PathVariable Long inboxId,
+        @RequestParam(PARAM_IDS) List<Long> ids) {
+        if (ids.size() > MAX_SIZE || ids.contains(null)) {
+            return badRequest().build();
+        }
+
+        List<Message> messages = messageService.findAllById(inboxId, ids);
+        return ok(messageModelAssembler.toMultiModel(inboxId, convert(inboxId, messages), ids));
+    }
+
+    @GetMapping(path = PATH_SEARCH)
+    public ResponseEntity<PagedModel<MessageModel>> search(@PathVariable Long inboxId, @RequestParam(PARAM_QUERY) String q,
+        Pageable pageable) {
+        if (!hasText(q)) {
+            return badRequest().build();
+        }
+
+        Page<Message> messages = messageService.search(inboxId, q, pageable);
+        return ok(messageModelAssembler.toSearchModel(inboxId, q, convert(inboxId, messages)));
     }
 
     @GetMapping(path = PATH_FIND_ONE)
-    public ResponseEntity<MessageModel> findOne(@PathVariable Long inboxId, @PathVariable Long id) {
-        return messageService.findOne(inboxId, id).map(m -> ok(messageModelAssembler.toModel(convert(inboxId, m))))
-            .orElse(notFound().build());
+    public ResponseEntity<MessageModel> findOne(@PathVariable Long inboxId, @PathVariable Long id, WebRequest request) {
+        return pipelineMetrics.record(RESOURCE, LOOKUP, () -> messageService.findOne(inboxId, id))
+            .map(m -> okUnlessNotModified(request, EntityTags.of(m), () -> {
+                MessageProjection projection = pipelineMetrics.record(RESOURCE, CONVERSION, () -> convert(inboxId, m));
+                return pipelineMetrics.record(RESOURCE, ASSEMBLY, () -> messageModelAssembler.toModel(projection));
+            })).orElse(notFound().build());
     }
 
     @PostMapping(path = PATH_INSERT, consumes = APPLICATION_JSON_VALUE)
     public ResponseEntity<MessageModel> insert(@PathVariable Long inboxId, @RequestBody @Valid MessageInput messageInput) {
-        return status(CREATED)
-            .body(messageModelAssembler.toModel(convert(inboxId, messageService.insert(inboxId, messageInput))));
+        if (!inboxService.findOne(inboxId).isPresent()) {
+            return notFound().build();
+        }
+
+        Message message;
+        try {
+            message = messageService.insert(inboxId, messageInput);
+        } catch (InboxNotFoundException e) {
+            return notFound().build();
+        }
+        return status(CREATED).body(messageModelAssembler.toModel(convert(inboxId, message)));
+    }
+
+    @PostMapping(path = PATH_INSERT_ALL, consumes = { APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<MessageBatchResult> insertAll(@PathVariable Long inboxId, InputStream body) throws IOException {
+        if (!inboxService.findOne(inboxId).isPresent()) {
+            return notFound().build();
+        }
+
+        // A batch is buffered completely before it is validated and stored, so its size is bounded in items and in bytes.
+        CountingInputStream limited = new CountingInputStream(limit(body, MAX_BATCH_BYTES + 1));
+        List<MessageInput> messageInputs = newArrayList();
+        try (MappingIterator<MessageInput> values = objectMapper.readerFor(MessageInput.class).readValues(limited)) {
+            while (values.hasNextValue()) {
+                if (messageInputs.size() == MAX_BATCH_SIZE) {
+                    return status(PAYLOAD_TOO_LARGE).build();
+                }
+                messageInputs.add(values.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            return limited.getCount() > MAX_BATCH_BYTES ? status(PAYLOAD_TOO_LARGE).build() : badRequest().build();
+        }
+        if (limited.getCount() > MAX_BATCH_BYTES) {
+            return status(PAYLOAD_TOO_LARGE).build();
+        }
+
+        Map<Integer, List<String>> errors = validate(messageInputs);
+        if (!errors.isEmpty()) {
+            return badRequest().body(new MessageBatchResult(null, errors));
+        }
+
+        List<Message> messages;
+        try {
+            messages = messageService.insertAll(inboxId, messageInputs);
+        } catch (InboxNotFoundException e) {
+            return notFound().build();
+        }
+        return status(CREATED).body(new MessageBatchResult(messages.stream().map(Message::getId).collect(toList()), null));
     }
 
     @PutMapping(path = PATH_UPDATE, consumes = APPLICATION_JSON_VALUE)
     public ResponseEntity<MessageModel> update(@PathVariable Long inboxId, @PathVariable Long id,
-        @RequestBody @Valid MessageInput messageInput) {
-        return messageService.update(inboxId, id, messageInput).map(m -> ok(messageModelAssembler.toModel(convert(inboxId, m))))
+        @RequestBody @Valid MessageInput messageInput, @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        Optional<Message> message;
+        try {
+            message = messageService.update(inboxId, id, versionOf(ifMatch, id), messageInput);
+        } catch (IllegalArgumentException | VersionConflictException e) {
+            return status(PRECONDITION_FAILED).build();
+        }
+        return message
+            .map(m -> ok().eTag(EntityTags.of(m)).varyBy(ACCEPT).body(messageModelAssembler.toModel(convert(inboxId, m))))
             .orElse(notFound().build());
     }
 
     @DeleteMapping(path = PATH_DELETE)
-    public ResponseEntity<Void> delete(@PathVariable Long inboxId, @PathVariable Long id) {
-        return messageService.delete(inboxId, id) ? ok().build() : notFound().build();
+    public ResponseEntity<Void> delete(@PathVariable Long inboxId, @PathVariable Long id,
+        @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
+        boolean deleted;
+        try {
+            deleted = messageService.delete(inboxId, id, versionOf(ifMatch, id));
+        } catch (IllegalArgumentException | VersionConflictException e) {
+            return status(PRECONDITION_FAILED).build();
+        }
+        return deleted ? ok().build() : notFound().build();
+    }
+
+    private Map<Integer, List<String>> validate(List<MessageInput> messageInputs) {
+        Map<Integer, List<String>> errors = new TreeMap<>();
+        for (int i = 0; i < messageInputs.size(); i++) {
+            MessageInput messageInput = messageInputs.get(i);
+            if (messageInput == null) {
+                errors.put(i, singletonList("must not be null"));
+                continue;
+            }
+
+            Set<ConstraintViolation<MessageInput>> violations = validator.validate(messageInput);
+            if (!violations.isEmpty()) {
+                errors.put(i,
+                    violations.stream().map(v -> v.getPropertyPath() + " " + v.getMessage()).sorted().collect(toList()));
+            }
+        }
+        return errors;
     }
 
     private static Page<MessageProjection> convert(Long inboxId, Page<Message> messages) {
         return new PageImpl<>(convert(inboxId, messages.getContent()), messages.getPageable(), messages.getTotalElements());
     }
 
+    private static Slice<MessageProjection> convert(Long inboxId, Slice<Message> messages) {
+        return new SliceImpl<>(convert(inboxId, messages.getContent()), messages.getPageable(), messages.hasNext());
+    }
+
     private static List<MessageProjection> convert(Long inboxId, List<Message> messages) {
         return messages.stream().map(i -> convert(inboxId, i)).collect(toList());
     }
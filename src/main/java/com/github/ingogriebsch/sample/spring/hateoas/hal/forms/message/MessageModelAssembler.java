@@ -19,19 +19,26 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.withoutContent;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static org.springframework.hateoas.IanaLinkRelations.NEXT;
 import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.UriTemplate.of;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.afford;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-import static org.springframework.web.util.UriComponentsBuilder.fromUri;
+import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
+import java.util.List;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.LinkTemplate;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.StreamingPagedModel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
@@ -40,6 +47,15 @@ import org.springframework.web.util.UriComponentsBuilder;
 @RequiredArgsConstructor
 public class MessageModelAssembler implements RepresentationModelAssembler<MessageProjection, MessageModel> {
 
+    private static final LinkTemplate FIND_ALL = LinkTemplate.of(MessageController.class, "findAll");
+    private static final LinkTemplate FIND_ALL_AFTER = LinkTemplate.of(MessageController.class, "findAllAfter");
+    private static final LinkTemplate FIND_ALL_BY_ID = LinkTemplate.of(MessageController.class, "findAllById");
+    private static final LinkTemplate SEARCH = LinkTemplate.of(MessageController.class, "search");
+    private static final LinkTemplate FIND_ONE = LinkTemplate.of(MessageController.class, "findOne");
+    private static final LinkTemplate INSERT = LinkTemplate.of(MessageController.class, "insert");
+    private static final LinkTemplate UPDATE = LinkTemplate.of(MessageController.class, "update");
+    private static final LinkTemplate DELETE = LinkTemplate.of(MessageController.class, "delete");
+
     @NonNull
     private final PagedResourcesAssembler<MessageProjection> pagedResourcesAssembler;
     @NonNull
@@ -51,25 +67,90 @@ public class MessageModelAssembler implements RepresentationModelAssembler<Messa
     }
 
     public PagedModel<MessageModel> toPagedModel(@NonNull Long inboxId, @NonNull Page<MessageProjection> source) {
-        return pagedResourcesAssembler.toModel(source, this, pagedModelSelfLink(inboxId, source));
+        return toPagedModel(inboxId, null, source);
+    }
+
+    public PagedModel<MessageModel> toPagedModel(@NonNull Long inboxId, String title, @NonNull Page<MessageProjection> source) {
+        return pagedResourcesAssembler.toModel(source, this, pagedModelSelfLink(inboxId, title, source));
+    }
+
+    public PagedModel<MessageModel> toSearchModel(@NonNull Long inboxId, @NonNull String query,
+        @NonNull Page<MessageProjection> source) {
+        return pagedResourcesAssembler.toModel(source, this, searchModelSelfLink(inboxId, query, source));
+    }
+
+    public StreamingPagedModel<MessageProjection, MessageModel> toStreamingModel(@NonNull Long inboxId,
+        @NonNull Page<MessageProjection> source) {
+        return toStreamingModel(inboxId, null, source);
+    }
+
+    public StreamingPagedModel<MessageProjection, MessageModel> toStreamingModel(@NonNull Long inboxId, String title,
+        @NonNull Page<MessageProjection> source) {
+        return StreamingPagedModel.of(MessageController.RESOURCE, toPagedModel(inboxId, title, withoutContent(source)),
+            source.getContent(), this::toModel);
+    }
+
+    public CollectionModel<MessageModel> toCursorModel(@NonNull Long inboxId, @NonNull Slice<MessageProjection> source,
+        String after) {
+        CollectionModel<MessageModel> model = toCollectionModel(source.getContent());
+        model.add(cursorModelSelfLink(inboxId, after, source.getSize()));
+        if (source.hasNext()) {
+            List<MessageProjection> content = source.getContent();
+            model.add(cursorModelNextLink(inboxId, encode(content.get(content.size() - 1).getId()), source.getSize()));
+        }
+        return model;
     }
 
-    private Link pagedModelSelfLink(Long inboxId, Page<MessageProjection> source) {
+    public CollectionModel<MessageModel> toMultiModel(@NonNull Long inboxId, @NonNull List<MessageProjection> source,
+        @NonNull List<Long> ids) {
+        List<MessageModel> content = newArrayListWithCapacity(source.size());
+        for (MessageProjection projection : source) {
+            content.add(instantiate(projection).add(FIND_ONE.link(SELF, inboxId, projection.getId())));
+        }
+        return new CollectionModel<>(content, multiModelSelfLink(inboxId, ids));
+    }
+
+    private Link pagedModelSelfLink(Long inboxId, String title, Page<MessageProjection> source) {
         Pageable pageable = source.getPageable();
-        Link selfLink = linkTo(methodOn(MessageController.class).findAll(inboxId, null)).withSelfRel();
+        String href = FIND_ALL.expand(inboxId, title);
 
-        UriComponentsBuilder builder = fromUri(selfLink.getTemplate().expand());
+        UriComponentsBuilder builder = fromUriString(href);
         pageableResolver.enhance(builder, null, pageable);
 
-        return new Link(of(builder.build().toString()), SELF).andAffordances(selfLink.getAffordances())
-            .andAffordance(afford(methodOn(MessageController.class).insert(inboxId, null)));
+        return new Link(of(builder.build().toString()), SELF).andAffordances(FIND_ALL.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand(inboxId)));
+    }
+
+    private Link searchModelSelfLink(Long inboxId, String query, Page<MessageProjection> source) {
+        String href = SEARCH.expand(inboxId, query);
+
+        UriComponentsBuilder builder = fromUriString(href);
+        pageableResolver.enhance(builder, null, source.getPageable());
+
+        return new Link(of(builder.build().toString()), SELF).andAffordances(SEARCH.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand(inboxId)));
+    }
+
+    private static Link cursorModelSelfLink(Long inboxId, String after, int size) {
+        String href = FIND_ALL_AFTER.expand(inboxId, after, size);
+        return new Link(href, SELF).andAffordances(FIND_ALL_AFTER.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand(inboxId)));
+    }
+
+    private static Link multiModelSelfLink(Long inboxId, List<Long> ids) {
+        String href = FIND_ALL_BY_ID.expand(inboxId, ids);
+        return new Link(href, SELF).andAffordances(FIND_ALL_BY_ID.affordances(href))
+            .andAffordances(INSERT.affordances(INSERT.expand(inboxId)));
+    }
+
+    private static Link cursorModelNextLink(Long inboxId, String after, int size) {
+        return FIND_ALL_AFTER.link(NEXT, inboxId, after, size);
     }
 
     private static Link modelSelfLink(Long inboxId, Long id) {
-        Link self = linkTo(methodOn(MessageController.class).findOne(inboxId, id)).withSelfRel();
-        self = self.andAffordance(afford(methodOn(MessageController.class).update(inboxId, id, null)));
-        self = self.andAffordance(afford(methodOn(MessageController.class).delete(inboxId, id)));
-        return self;
+        String href = FIND_ONE.expand(inboxId, id);
+        return new Link(href, SELF).andAffordances(FIND_ONE.affordances(href)).andAffordances(UPDATE.affordances(href))
+            .andAffordances(DELETE.affordances(href));
     }
 
     private static MessageModel instantiate(MessageProjection source) {
@@ -19,7 +19,10 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.HalFormsTemplateRegistry;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
 import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
@@ -28,6 +31,11 @@ import org.springframework.data.web.PagedResourcesAssembler;
 @Configuration
 public class MessageModelHateoasConfiguration {
 
+    @Autowired
+    public void registerTemplates(@NonNull HalFormsTemplateRegistry halFormsTemplateRegistry) {
+        halFormsTemplateRegistry.register(MessageInput.class);
+    }
+
     @Bean
     public MessageModelAssembler messageModelAssembler(
         @NonNull PagedResourcesAssembler<MessageProjection> pagedResourcesAssembler,
@@ -36,8 +44,8 @@ public class MessageModelHateoasConfiguration {
     }
 
     @Bean
-    public MessageModelProcessor messageModelProcessor() {
-        return new MessageModelProcessor();
+    public MessageModelProcessor messageModelProcessor(@NonNull PipelineMetrics pipelineMetrics) {
+        return new MessageModelProcessor(pipelineMetrics);
     }
 
 }
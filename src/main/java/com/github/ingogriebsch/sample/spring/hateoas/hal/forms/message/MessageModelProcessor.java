@@ -19,25 +19,34 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.PROCESSING;
+import static org.springframework.hateoas.LinkRelation.of;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.LinkTemplate;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelProcessor;
 
+@RequiredArgsConstructor
 public class MessageModelProcessor implements RepresentationModelProcessor<MessageModel> {
 
     static final String REL_PARENT = "parent";
 
+    private static final LinkTemplate PARENT = LinkTemplate.of(InboxController.class, "findOne");
+
+    @NonNull
+    private final PipelineMetrics pipelineMetrics;
+
     @Override
     public MessageModel process(@NonNull MessageModel model) {
-        return model.add(parentLink(model.getInboxId()));
+        return pipelineMetrics.record(MessageController.RESOURCE, PROCESSING, () -> model.add(parentLink(model.getInboxId())));
     }
 
     private static Link parentLink(Long inboxId) {
-        return linkTo(methodOn(InboxController.class).findOne(inboxId)).withRel(REL_PARENT);
+        return PARENT.link(of(REL_PARENT), inboxId);
     }
 
 }
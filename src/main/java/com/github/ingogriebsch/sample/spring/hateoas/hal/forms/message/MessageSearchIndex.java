@@ -0,0 +1,310 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Maps.newHashMap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+// Every term maps to a posting of primitive columns sorted by message id, holding the frequency of the term and the length
+// of the message. Postings are replaced copy-on-write, so readers work on a consistent posting without locking and no
+// posting entry is boxed.
+class MessageSearchIndex {
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Comparator<Hit> RANKING =
+        Comparator.<Hit> comparingDouble(hit -> hit.score).reversed().thenComparingLong(hit -> hit.id);
+
+    private final ConcurrentMap<String, Posting> postings = new ConcurrentHashMap<>();
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    // Callers serialize the writes of a segment and only add messages which are not indexed yet.
+    void add(@NonNull Message message) {
+        addAll(singletonList(message));
+    }
+
+    void addAll(@NonNull List<Message> messages) {
+        Map<String, Posting.Builder> added = newHashMap();
+        for (Message message : messages) {
+            Map<String, Integer> frequencies = frequencies(message);
+            int length = lengthOf(frequencies);
+            frequencies.forEach((term, frequency) -> added.computeIfAbsent(term, k -> new Posting.Builder()).add(message.getId(),
+                frequency, length));
+            totalLength.addAndGet(length);
+        }
+
+        added.forEach((term, builder) -> postings.put(term, Posting.merge(postings.get(term), builder.build())));
+        count.addAndGet(messages.size());
+    }
+
+    void remove(@NonNull Message message) {
+        Map<String, Integer> frequencies = frequencies(message);
+        frequencies.keySet().forEach(term -> {
+            Posting posting = postings.get(term);
+            Posting remaining = posting != null ? posting.without(message.getId()) : null;
+            if (remaining == null) {
+                postings.remove(term);
+            } else if (remaining != posting) {
+                postings.put(term, remaining);
+            }
+        });
+
+        totalLength.addAndGet(-lengthOf(frequencies));
+        count.decrementAndGet();
+    }
+
+    // Ranks every message matching at least one term of the query by its BM25 score, ties are broken by id. The postings are
+    // sorted by id, so the scores of a message are summed up by walking them side by side, and only the best ones up to the
+    // limit are kept on a bounded heap. A page costs O(matches * log(limit)) and allocates nothing per match.
+    Hits search(@NonNull String query, int limit) {
+        List<String> terms = tokenize(query);
+        long documents = count.get();
+        if (terms.isEmpty() || documents <= 0) {
+            return new Hits(emptyList(), 0);
+        }
+
+        double averageLength = max(1.0, (double) totalLength.get() / documents);
+        Posting[] matched = terms.stream().distinct().map(postings::get).filter(Objects::nonNull).toArray(Posting[]::new);
+        double[] idfs = new double[matched.length];
+        for (int i = 0; i < matched.length; i++) {
+            idfs[i] = log(1 + (documents - matched[i].size + 0.5) / (matched[i].size + 0.5));
+        }
+
+        int[] cursors = new int[matched.length];
+        PriorityQueue<Hit> best = new PriorityQueue<>(RANKING.reversed());
+        long total = 0;
+        for (long id = next(matched, cursors); id != Long.MAX_VALUE; id = next(matched, cursors)) {
+            double score = 0;
+            for (int i = 0; i < matched.length; i++) {
+                Posting posting = matched[i];
+                int cursor = cursors[i];
+                if (cursor < posting.size && posting.ids[cursor] == id) {
+                    score += idfs[i] * posting.score(cursor, averageLength);
+                    cursors[i]++;
+                }
+            }
+
+            total++;
+            if (limit <= 0) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(new Hit(id, score));
+            } else if (score > best.peek().score || score == best.peek().score && id < best.peek().id) {
+                best.poll();
+                best.add(new Hit(id, score));
+            }
+        }
+
+        Long[] ids = new Long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id;
+        }
+        return new Hits(Arrays.asList(ids), total);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return emptyList();
+        }
+        return SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT)).filter(term -> !term.isEmpty()).collect(toList());
+    }
+
+    private static long next(Posting[] postings, int[] cursors) {
+        long id = Long.MAX_VALUE;
+        for (int i = 0; i < postings.length; i++) {
+            if (cursors[i] < postings[i].size) {
+                id = Math.min(id, postings[i].ids[cursors[i]]);
+            }
+        }
+        return id;
+    }
+
+    private static Map<String, Integer> frequencies(Message message) {
+        Map<String, Integer> frequencies = newHashMap();
+        for (String term : tokenize(message.getTitle())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        for (String term : tokenize(message.getContent())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private static int lengthOf(Map<String, Integer> frequencies) {
+        return frequencies.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Value
+    static class Hits {
+
+        List<Long> ids;
+        long total;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Hit {
+
+        private final long id;
+        private final double score;
+    }
+
+    // The columns may hold spare capacity behind the size. Appending fills it in place and publishes a posting with a larger
+    // size, which is safe because older postings never read past their own size. Any other change copies the columns.
+    @RequiredArgsConstructor
+    private static final class Posting {
+
+        private final long[] ids;
+        private final int[] frequencies;
+        private final int[] lengths;
+        private final int size;
+
+        private double score(int index, double averageLength) {
+            int frequency = frequencies[index];
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * lengths[index] / averageLength));
+        }
+
+        private Posting without(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+
+            Builder builder = new Builder(size - 1);
+            builder.addAll(this, 0, index);
+            builder.addAll(this, index + 1, size);
+            return builder.build();
+        }
+
+        private static Posting merge(Posting posting, Posting added) {
+            if (posting == null) {
+                return added;
+            }
+            if (added.ids[0] > posting.ids[posting.size - 1]) {
+                return posting.append(added);
+            }
+
+            Builder builder = new Builder(posting.size + added.size);
+            int i = 0;
+            int j = 0;
+            while (i < posting.size || j < added.size) {
+                if (j == added.size || i < posting.size && posting.ids[i] < added.ids[j]) {
+                    builder.add(posting, i++);
+                } else {
+                    if (i < posting.size && posting.ids[i] == added.ids[j]) {
+                        i++;
+                    }
+                    builder.add(added, j++);
+                }
+            }
+            return builder.build();
+        }
+
+        private Posting append(Posting added) {
+            int grown = size + added.size;
+            if (grown > ids.length) {
+                Builder builder = new Builder(max(grown, size + (size >> 1)));
+                builder.addAll(this, 0, size);
+                builder.addAll(added, 0, added.size);
+                return new Posting(builder.ids, builder.frequencies, builder.lengths, builder.size);
+            }
+
+            System.arraycopy(added.ids, 0, ids, size, added.size);
+            System.arraycopy(added.frequencies, 0, frequencies, size, added.size);
+            System.arraycopy(added.lengths, 0, lengths, size, added.size);
+            return new Posting(ids, frequencies, lengths, grown);
+        }
+
+        private static final class Builder {
+
+            private long[] ids;
+            private int[] frequencies;
+            private int[] lengths;
+            private int size;
+
+            private Builder() {
+                this(1);
+            }
+
+            private Builder(int capacity) {
+                this.ids = new long[capacity];
+                this.frequencies = new int[capacity];
+                this.lengths = new int[capacity];
+            }
+
+            // Entries are added by ascending id, which is the order new messages get their ids in.
+            private void add(long id, int frequency, int length) {
+                checkArgument(size == 0 || ids[size - 1] < id, "Messages must be added by strictly ascending id!");
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    frequencies = Arrays.copyOf(frequencies, size * 2);
+                    lengths = Arrays.copyOf(lengths, size * 2);
+                }
+                ids[size] = id;
+                frequencies[size] = frequency;
+                lengths[size++] = length;
+            }
+
+            private void add(Posting posting, int index) {
+                add(posting.ids[index], posting.frequencies[index], posting.lengths[index]);
+            }
+
+            private void addAll(Posting posting, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    add(posting, i);
+                }
+            }
+
+            // Trims the columns, most terms occur in a few messages only.
+            private Posting build() {
+                return new Posting(Arrays.copyOf(ids, size), Arrays.copyOf(frequencies, size), Arrays.copyOf(lengths, size),
+                    size);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IdGenerator;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.SortedIndex;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@RequiredArgsConstructor
+class MessageSegment {
+
+    static final SortedIndex<Message> MESSAGES_BY_TITLE = new SortedIndex<>(Message::getTitle);
+
+    private final IndexedStore<Message> messages = new IndexedStore<>(MessageColumnLayout.INSTANCE, MESSAGES_BY_TITLE);
+    private final MessageSearchIndex searchIndex = new MessageSearchIndex();
+    // Guards the writes to this inbox only, so writers to different inboxes never wait for each other.
+    private final Lock lock = new ReentrantLock();
+    // Set while a compaction of the content store is handed to the reclaimer, so it is scheduled once at a time.
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    @Setter
+    private volatile boolean deleted;
+    @NonNull
+    private final IdGenerator idGenerator;
+    @NonNull
+    private final MessageContentStore contentStore;
+
+    MessageSegment(@NonNull IdGenerator idGenerator) {
+        this(idGenerator, new MessageContentStore());
+    }
+
+}
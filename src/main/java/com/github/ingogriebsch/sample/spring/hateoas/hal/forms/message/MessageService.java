@@ -19,94 +19,466 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import static java.lang.Integer.MAX_VALUE;
+import static java.lang.Math.min;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Optional.empty;
-import static java.util.Optional.of;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.orderOf;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toPage;
-import static com.google.common.collect.Lists.newArrayList;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toSlice;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageSegment.MESSAGES_BY_TITLE;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Maps.newHashMap;
-import static com.google.common.collect.MoreCollectors.toOptional;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IdGenerator;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore.Snapshot;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.SequenceIdGenerator;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxDeletedEvent;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxNotFoundException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxRemoved;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageSearchIndex.Hits;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.CheckpointOutput;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Checkpointable;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.InMemoryStorage;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Journal;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Recovery;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Storage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
 
 @Service
-public class MessageService {
+public class MessageService implements Checkpointable, MeterBinder {
 
-    private final Map<Long, List<Message>> messagesByInbox = newHashMap();
+    static final String SORT_ID = "id";
+    static final String SORT_TITLE = "title";
+
+    static final String MESSAGES_GAUGE = "inbox.messages";
+
+    private static final String CHECKPOINT_NAME = "messages";
+
+    private final ConcurrentMap<Long, MessageSegment> messagesByInbox = new ConcurrentHashMap<>();
+    // Inbox ids are never reused, so remembering the deleted ones keeps late writers from creating their segments again.
+    private final Set<Long> deletedInboxes = ConcurrentHashMap.newKeySet();
+    private final Supplier<IdGenerator> idGeneratorFactory;
+    private final Storage storage;
+    private final Journal journal;
+    private final Executor reclaimer;
+    private volatile MeterRegistry meterRegistry;
+
+    public MessageService() {
+        this(SequenceIdGenerator::new);
+    }
+
+    public MessageService(@NonNull Supplier<IdGenerator> idGeneratorFactory) {
+        this.idGeneratorFactory = idGeneratorFactory;
+        this.storage = new InMemoryStorage();
+        this.journal = new Journal(storage);
+        this.reclaimer = reclaimer();
+    }
+
+    @Autowired
+    public MessageService(@NonNull Storage storage) {
+        this(storage, reclaimer());
+    }
+
+    MessageService(@NonNull Storage storage, @NonNull Executor reclaimer) {
+        this.idGeneratorFactory = SequenceIdGenerator::new;
+        this.storage = storage;
+        this.journal = new Journal(storage);
+        this.reclaimer = reclaimer;
+        recover();
+    }
 
     public Page<Message> findAll(@NonNull Long inboxId, @NonNull Pageable pageable) {
-        return toPage(messagesByInbox.containsKey(inboxId) ? newArrayList(messagesByInbox.get(inboxId)) : newArrayList(),
-            pageable);
+        return findAll(inboxId, null, pageable);
+    }
+
+    public Page<Message> findAll(@NonNull Long inboxId, String title, @NonNull Pageable pageable) {
+        Optional<Order> order = orderOf(pageable.getSort(), SORT_ID, SORT_TITLE);
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
+            return toPage(emptyList(), pageable);
+        }
+
+        Direction direction = order.map(Order::getDirection).orElse(ASC);
+        if (title != null) {
+            return toPage(segment.getMessages(), MESSAGES_BY_TITLE, title, direction, pageable);
+        }
+        if (order.filter(o -> SORT_TITLE.equals(o.getProperty())).isPresent()) {
+            return toPage(segment.getMessages(), MESSAGES_BY_TITLE, direction, pageable);
+        }
+        return toPage(segment.getMessages(), direction, pageable);
+    }
+
+    public Slice<Message> findAllAfter(@NonNull Long inboxId, Long after, int size) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
+            return new SliceImpl<>(emptyList(), PageRequest.of(0, size), false);
+        }
+        return toSlice(segment.getMessages(), after, size);
+    }
+
+    public List<Message> findAllById(@NonNull Long inboxId, @NonNull Collection<Long> ids) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
+            return emptyList();
+        }
+        return segment.getMessages().getAll(ids);
     }
 
     public Optional<Message> findOne(@NonNull Long inboxId, @NonNull Long id) {
-        List<Message> messages = messagesByInbox.get(inboxId);
-        if (messages == null) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
             return empty();
         }
-        return messages.stream().filter(p -> p.getId().equals(id)).limit(1).findAny();
+        return segment.getMessages().get(id);
     }
 
-    public Message insert(@NonNull Long inboxId, @NonNull MessageInput messageInput) {
-        List<Message> messages = messagesByInbox.get(inboxId);
-        if (messages == null) {
-            messages = newArrayList();
-            messagesByInbox.put(inboxId, messages);
+    public Page<Message> search(@NonNull Long inboxId, @NonNull String query, @NonNull Pageable pageable) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
+            return new PageImpl<>(emptyList(), pageable, 0);
         }
 
-        Message message = new Message();
-        message.setId(nextId(messages));
-        message = merge(message, messageInput);
+        Hits hits = segment.getSearchIndex().search(query, (int) min(pageable.getOffset() + pageable.getPageSize(), MAX_VALUE));
+        List<Long> ranked = hits.getIds();
+        List<Long> ids = ranked.subList((int) min(pageable.getOffset(), ranked.size()), ranked.size());
+        return toPage(segment.getMessages(), ids, Message::getId, pageable, hits.getTotal());
+    }
 
-        messages.add(message);
-        return message;
+    public Message insert(@NonNull Long inboxId, @NonNull MessageInput messageInput) {
+        MessageSegment segment = segment(inboxId);
+        MessageContentStore contentStore = segment.getContentStore();
+        return journal.apply(segment.getLock(), () -> {
+            checkNotDeleted(inboxId, segment);
+            Message message = new Message();
+            message.setId(segment.getIdGenerator().next());
+            return contentStore.store(merge(message, messageInput));
+        }, inserted -> new MessagesSaved(inboxId, singletonList(inserted)), inserted -> {
+            contentStore.retain(inserted);
+            segment.getMessages().put(inserted.getId(), inserted);
+            segment.getSearchIndex().add(inserted);
+        });
     }
 
-    public Optional<Message> update(@NonNull Long inboxId, @NonNull Long id, @NonNull MessageInput messageInput) {
-        List<Message> messages = messagesByInbox.get(inboxId);
-        if (messages == null) {
-            return empty();
+    public List<Message> insertAll(@NonNull Long inboxId, @NonNull List<MessageInput> messageInputs) {
+        if (messageInputs.isEmpty()) {
+            return emptyList();
         }
 
-        Optional<Message> message = messages.stream().filter(p -> id.equals(p.getId())).collect(toOptional());
-        if (!message.isPresent()) {
+        MessageSegment segment = segment(inboxId);
+        MessageContentStore contentStore = segment.getContentStore();
+        return journal.apply(segment.getLock(), () -> {
+            checkNotDeleted(inboxId, segment);
+            long firstId = segment.getIdGenerator().next(messageInputs.size());
+            List<Message> messages = newArrayListWithCapacity(messageInputs.size());
+            for (MessageInput messageInput : messageInputs) {
+                Message message = new Message();
+                message.setId(firstId + messages.size());
+                messages.add(contentStore.store(merge(message, messageInput)));
+            }
+            return messages;
+        }, inserted -> new MessagesSaved(inboxId, inserted), inserted -> {
+            inserted.forEach(contentStore::retain);
+            segment.getMessages().putAll(inserted, Message::getId);
+            segment.getSearchIndex().addAll(inserted);
+        });
+    }
+
+    public Optional<Message> update(@NonNull Long inboxId, @NonNull Long id, @NonNull MessageInput messageInput) {
+        return update(inboxId, id, null, messageInput);
+    }
+
+    public Optional<Message> update(@NonNull Long inboxId, @NonNull Long id, Long expectedVersion,
+        @NonNull MessageInput messageInput) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
             return empty();
         }
-
-        return of(merge(message.get(), messageInput));
+        MessageContentStore contentStore = segment.getContentStore();
+        Message[] previous = new Message[1];
+        Optional<Message> result = journal.apply(segment.getLock(), () -> find(segment, id).map(message -> {
+            message.checkVersion(expectedVersion);
+            previous[0] = message;
+            return contentStore.store(merge(new Message(message.getId(), null, null, message.getVersion() + 1), messageInput));
+        }), updated -> updated.map(message -> new MessagesSaved(inboxId, singletonList(message))).orElse(null),
+            updated -> updated.ifPresent(message -> {
+                contentStore.retain(message);
+                contentStore.release(previous[0]);
+                segment.getMessages().put(id, message);
+                segment.getSearchIndex().remove(previous[0]);
+                segment.getSearchIndex().add(message);
+            }));
+        compactLater(segment);
+        return result;
     }
 
     public boolean delete(@NonNull Long inboxId, @NonNull Long id) {
-        List<Message> messages = messagesByInbox.get(inboxId);
-        if (messages == null) {
+        return delete(inboxId, id, null);
+    }
+
+    public boolean delete(@NonNull Long inboxId, @NonNull Long id, Long expectedVersion) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment == null) {
             return false;
         }
-        return messages.removeIf(p -> p.getId().equals(id));
+        boolean removed = journal.apply(segment.getLock(), () -> find(segment, id).map(message -> {
+            message.checkVersion(expectedVersion);
+            return message;
+        }), found -> found.map(message -> new MessageRemoved(inboxId, id)).orElse(null), found -> found.ifPresent(message -> {
+            segment.getContentStore().release(message);
+            segment.getMessages().remove(id);
+            segment.getSearchIndex().remove(message);
+        })).isPresent();
+        compactLater(segment);
+        return removed;
     }
 
-    private static Message merge(Message message, @NonNull MessageInput messageInput) {
-        message.setTitle(messageInput.getTitle());
-        message.setContent(messageInput.getContent());
-        return message;
+    @EventListener
+    public void onInboxDeleted(@NonNull InboxDeletedEvent event) {
+        deletedInboxes.add(event.getInboxId());
+        MessageSegment segment = messagesByInbox.remove(event.getInboxId());
+        if (segment == null) {
+            return;
+        }
+
+        // Writers which picked up the segment before it was removed must not log into it any longer. The content store goes
+        // away together with the segment, so nothing is released message by message and the deletion costs the same for any
+        // size of inbox.
+        segment.getLock().lock();
+        try {
+            segment.setDeleted(true);
+        } finally {
+            segment.getLock().unlock();
+        }
+
+        if (meterRegistry != null) {
+            Gauge gauge = meterRegistry.find(MESSAGES_GAUGE).tag("inbox", event.getInboxId().toString()).gauge();
+            if (gauge != null) {
+                meterRegistry.remove(gauge);
+            }
+        }
     }
 
-    private static Long nextId(Collection<Message> messages) {
-        Long id = 0L;
-        for (Message message : messages) {
-            Long messageId = message.getId();
-            if (id < messageId) {
-                id = messageId;
+    // Segments created before the registry is bound get their gauge here, later ones when they are created.
+    @Override
+    public void bindTo(@NonNull MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        messagesByInbox.forEach(this::registerGauge);
+    }
+
+    @Override
+    public String getCheckpointName() {
+        return CHECKPOINT_NAME;
+    }
+
+    @Override
+    public void writeCheckpoint(@NonNull CheckpointOutput output) throws IOException {
+        for (Map.Entry<Long, MessageSegment> entry : messagesByInbox.entrySet()) {
+            MessageSegment segment = entry.getValue();
+            Snapshot<Message> snapshot = segment.getMessages().snapshot();
+
+            output.writeBoolean(true);
+            output.writeLong(entry.getKey());
+            output.writeLong(segment.getIdGenerator().current());
+            output.writeLong(snapshot.size());
+            for (Message message : snapshot) {
+                output.writeLong(message.getId());
+                output.writeString(message.getTitle());
+                output.writeString(message.getContent());
+                output.writeLong(message.getVersion());
+            }
+        }
+        output.writeBoolean(false);
+    }
+
+    private void recover() {
+        Map<Long, Recovery<Message>> recoveries = newHashMap();
+        Map<Long, MessageContentStore> contentStores = newHashMap();
+        long position = storage.restore(CHECKPOINT_NAME, input -> {
+            while (input.readBoolean()) {
+                long inboxId = input.readLong();
+                Recovery<Message> recovery = new Recovery<>();
+                MessageContentStore contentStore = new MessageContentStore();
+                recoveries.put(inboxId, recovery);
+                contentStores.put(inboxId, contentStore);
+                recovery.reserved(input.readLong());
+                for (long count = input.readLong(); count > 0; count--) {
+                    recovery.restored(contentStore
+                        .store(new Message(input.readLong(), input.readString(), input.readString(), input.readLong())));
+                }
+            }
+        });
+        storage.replay(position, mutation -> {
+            if (mutation instanceof MessagesSaved) {
+                MessagesSaved saved = (MessagesSaved) mutation;
+                if (!deletedInboxes.contains(saved.getInboxId())) {
+                    Recovery<Message> recovery = recoveries.computeIfAbsent(saved.getInboxId(), k -> new Recovery<>());
+                    saved.getMessages().forEach(recovery::saved);
+                }
+            } else if (mutation instanceof MessageRemoved) {
+                MessageRemoved removed = (MessageRemoved) mutation;
+                if (!deletedInboxes.contains(removed.getInboxId())) {
+                    recoveries.computeIfAbsent(removed.getInboxId(), k -> new Recovery<>()).removed(removed.getId());
+                }
+            } else if (mutation instanceof InboxRemoved) {
+                deletedInboxes.add(((InboxRemoved) mutation).getId());
+                recoveries.remove(((InboxRemoved) mutation).getId());
+                contentStores.remove(((InboxRemoved) mutation).getId());
+            }
+        });
+
+        recoveries.forEach((inboxId, recovery) -> {
+            MessageContentStore contentStore = contentStores.computeIfAbsent(inboxId, k -> new MessageContentStore());
+            MessageSegment segment = new MessageSegment(new SequenceIdGenerator(recovery.maxId()), contentStore);
+            List<Message> recovered = recovery.values();
+            recovered.forEach(message -> contentStore.retain(contentStore.store(message)));
+            if (!recovered.isEmpty()) {
+                segment.getMessages().putAll(recovered, Message::getId);
+                segment.getSearchIndex().addAll(recovered);
+            }
+            messagesByInbox.put(inboxId, segment);
+            // Restored messages replaced by the tail of the log leave dead bytes behind in the slabs they were restored to.
+            compactLater(segment);
+        });
+    }
+
+    // Compaction copies whole slabs, so it is handed to the reclaimer instead of delaying the request which released the bytes.
+    // Offering a slab and finishing a compaction both happen under the lock of the segment, so a slab offered after the
+    // reclaimer gave up is scheduled by the writer which offered it.
+    private void compactLater(MessageSegment segment) {
+        if (segment.getContentStore().hasSparse() && segment.getCompacting().compareAndSet(false, true)) {
+            reclaimer.execute(() -> compact(segment));
+        }
+    }
+
+    // Copies the messages still living in sparse slabs forward, so the slabs are reclaimed once no snapshot references them.
+    // Every message is moved under the lock on its own, so writers to the inbox are only held up for a single copy.
+    private void compact(MessageSegment segment) {
+        for (ContentSlab slab = pollSparse(segment); slab != null; slab = pollSparse(segment)) {
+            ContentSlab sparse = slab;
+            sparse.forEach((id, offset) -> relocate(segment, sparse, id, offset));
+            locked(segment, () -> segment.getContentStore().compacted(sparse));
+        }
+    }
+
+    private static ContentSlab pollSparse(MessageSegment segment) {
+        segment.getLock().lock();
+        try {
+            ContentSlab slab = segment.isDeleted() ? null : segment.getContentStore().pollSparse();
+            if (slab == null) {
+                segment.getCompacting().set(false);
+            }
+            return slab;
+        } finally {
+            segment.getLock().unlock();
+        }
+    }
+
+    private static void relocate(MessageSegment segment, ContentSlab slab, long id, int offset) {
+        MessageContentStore contentStore = segment.getContentStore();
+        locked(segment,
+            () -> find(segment, id).filter(message -> message.slab() == slab && message.offset() == offset).ifPresent(message -> {
+                Message moved =
+                    contentStore.store(new Message(id, message.getTitle(), message.getContent(), message.getVersion()));
+                contentStore.retain(moved);
+                contentStore.release(message);
+                segment.getMessages().put(id, moved);
+            }));
+    }
+
+    private static void locked(MessageSegment segment, Runnable action) {
+        segment.getLock().lock();
+        try {
+            action.run();
+        } finally {
+            segment.getLock().unlock();
+        }
+    }
+
+    private MessageSegment segment(Long inboxId) {
+        MessageSegment segment = messagesByInbox.get(inboxId);
+        if (segment != null) {
+            return segment;
+        }
+
+        // The check and the gauge registration happen atomically with the creation, and deletion marks the inbox before it
+        // removes the segment, so neither a segment nor its gauge outlive the deletion of their inbox.
+        segment = messagesByInbox.computeIfAbsent(inboxId, k -> {
+            if (deletedInboxes.contains(k)) {
+                return null;
             }
+            MessageSegment created = new MessageSegment(idGeneratorFactory.get());
+            registerGauge(k, created);
+            return created;
+        });
+        if (segment == null) {
+            throw new InboxNotFoundException(inboxId);
+        }
+        return segment;
+    }
+
+    private static void checkNotDeleted(Long inboxId, MessageSegment segment) {
+        if (segment.isDeleted()) {
+            throw new InboxNotFoundException(inboxId);
+        }
+    }
+
+    private static Optional<Message> find(MessageSegment segment, Long id) {
+        return segment.isDeleted() ? empty() : segment.getMessages().get(id);
+    }
+
+    private void registerGauge(Long inboxId, MessageSegment segment) {
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            Gauge.builder(MESSAGES_GAUGE, segment, s -> s.getMessages().size()).tag("inbox", inboxId.toString())
+                .register(registry);
         }
-        return id + 1L;
+    }
+
+    // The reclaimer thread only exists while there is something to compact, so idle services do not hold on to one.
+    private static Executor reclaimer() {
+        return new ThreadPoolExecutor(0, 1, 30, SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "message-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Message merge(Message message, @NonNull MessageInput messageInput) {
+        message.setTitle(messageInput.getTitle());
+        message.setContent(messageInput.getContent());
+        return message;
     }
 
 }
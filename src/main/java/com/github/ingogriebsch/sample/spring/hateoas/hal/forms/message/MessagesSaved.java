@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.util.List;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.DivisibleMutation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@Data
+@NoArgsConstructor
+public class MessagesSaved implements DivisibleMutation {
+
+    private Long inboxId;
+    private List<Message> messages;
+
+    @Override
+    public boolean isDivisible() {
+        return messages.size() > 1;
+    }
+
+    @Override
+    public List<MessagesSaved> divide() {
+        int half = messages.size() / 2;
+        return newArrayList(new MessagesSaved(inboxId, messages.subList(0, half)),
+            new MessagesSaved(inboxId, messages.subList(half, messages.size())));
+    }
+}
@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    static final String STAGE_TIMER = "pipeline.stage";
+    static final String PAGE_ELEMENTS = "pipeline.page.elements";
+    static final String NOT_MODIFIED = "pipeline.not.modified";
+    static final String SERIALIZATION_TIMER = "pipeline.serialization";
+    static final String SERIALIZATION_BYTES = "pipeline.serialization.bytes";
+
+    static final String SERIALIZATION = "serialization";
+
+    @NonNull
+    private final MeterRegistry meterRegistry;
+    // Meters are resolved once per tag set, so the hot path never goes through the registry.
+    private final ConcurrentMap<String, Map<Stage, Timer>> stageTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> pageSummaries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> notModifiedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> serializationTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> serializationSummaries = new ConcurrentHashMap<>();
+
+    public <T> T record(@NonNull String resource, @NonNull Stage stage, @NonNull Supplier<T> step) {
+        Timer timer = stageTimers.computeIfAbsent(resource, this::stageTimers).get(stage);
+        ServerTiming serverTiming = ServerTiming.current();
+        if (serverTiming == null) {
+            return timer.record(step);
+        }
+
+        serverTiming.enter();
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            timer.record(nanos, NANOSECONDS);
+            serverTiming.exit(stage.tag(), nanos);
+        }
+    }
+
+    public void recordPage(@NonNull String resource, int elements) {
+        pageSummaries.computeIfAbsent(resource, r -> DistributionSummary.builder(PAGE_ELEMENTS).tag("resource", r)
+            .publishPercentileHistogram().register(meterRegistry)).record(elements);
+    }
+
+    public void recordNotModified(@NonNull String resource) {
+        notModifiedCounters
+            .computeIfAbsent(resource, r -> Counter.builder(NOT_MODIFIED).tag("resource", r).register(meterRegistry)).increment();
+    }
+
+    void recordSerialization(MediaType mediaType, long nanos, long bytes) {
+        String tag = mediaType != null ? mediaType.getType() + "/" + mediaType.getSubtype() : "none";
+        serializationTimers
+            .computeIfAbsent(tag,
+                t -> Timer.builder(SERIALIZATION_TIMER).tag("media.type", t).publishPercentileHistogram().register(meterRegistry))
+            .record(nanos, NANOSECONDS);
+        serializationSummaries.computeIfAbsent(tag, t -> DistributionSummary.builder(SERIALIZATION_BYTES).baseUnit("bytes")
+            .tag("media.type", t).publishPercentileHistogram().register(meterRegistry)).record(bytes);
+    }
+
+    private Map<Stage, Timer> stageTimers(String resource) {
+        Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder(STAGE_TIMER).tag("resource", resource).tag("stage", stage.tag())
+                .publishPercentileHistogram().register(meterRegistry));
+        }
+        return timers;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import static java.lang.String.format;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.joining;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+// Collects the stage durations of a single request which opted in to profiling. Requests which did not opt in never see an
+// instance, so the pipeline only pays for the thread local lookup. Stages running inside another one, like the processing of a
+// streamed item during serialization, are subtracted from the outer stage, so the entries never overlap.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ServerTiming {
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private final Deque<long[]> open = new ArrayDeque<>();
+
+    static ServerTiming current() {
+        return CURRENT.get();
+    }
+
+    static ServerTiming start() {
+        ServerTiming serverTiming = new ServerTiming();
+        CURRENT.set(serverTiming);
+        return serverTiming;
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+
+    void add(String name, long nanos) {
+        durations.merge(name, nanos, Long::sum);
+    }
+
+    void enter() {
+        open.push(new long[1]);
+    }
+
+    void exit(String name, long nanos) {
+        add(name, nanos - open.pop()[0]);
+        if (!open.isEmpty()) {
+            open.peek()[0] += nanos;
+        }
+    }
+
+    String header() {
+        return durations.entrySet().stream().map(e -> format(ROOT, "%s;dur=%.3f", e.getKey(), e.getValue() / 1_000_000d))
+            .collect(joining(", "));
+    }
+
+}
@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+// Opt-in per request through the X-Server-Timing header or the timing parameter. The response body of a profiled request is
+// buffered so the Server-Timing header can still carry the serialization time.
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_OPT_IN = "X-Server-Timing";
+    public static final String PARAM_OPT_IN = "timing";
+    public static final String HEADER_SERVER_TIMING = "Server-Timing";
+
+    static final String TOTAL = "total";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (!optedIn(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        ServerTiming serverTiming = ServerTiming.start();
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, buffered);
+        } finally {
+            ServerTiming.stop();
+            serverTiming.add(TOTAL, System.nanoTime() - start);
+            buffered.setHeader(HEADER_SERVER_TIMING, serverTiming.header());
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    private static boolean optedIn(HttpServletRequest request) {
+        return request.getHeader(HEADER_OPT_IN) != null || request.getParameter(PARAM_OPT_IN) != null;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.google.common.io.CountingOutputStream;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+// Streaming models assemble their items and invoke the representation model processors while being written. The recorded
+// serialization time includes both, while the Server-Timing header reports them as stages of their own.
+@RequiredArgsConstructor
+public class TimedHttpMessageConverter implements GenericHttpMessageConverter<Object> {
+
+    @Getter
+    @NonNull
+    private final GenericHttpMessageConverter<Object> delegate;
+    @NonNull
+    private final PipelineMetrics pipelineMetrics;
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return delegate.canRead(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return delegate.canRead(type, contextClass, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return delegate.canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return delegate.canWrite(type, clazz, mediaType);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return delegate.getSupportedMediaTypes();
+    }
+
+    @Override
+    public Object read(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+        throws IOException, HttpMessageNotReadableException {
+        return delegate.read(clazz, inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+        throws IOException, HttpMessageNotReadableException {
+        return delegate.read(type, contextClass, inputMessage);
+    }
+
+    @Override
+    public void write(Object t, MediaType contentType, HttpOutputMessage outputMessage)
+        throws IOException, HttpMessageNotWritableException {
+        write(contentType, outputMessage, counting -> delegate.write(t, contentType, counting));
+    }
+
+    @Override
+    public void write(Object t, Type type, MediaType contentType, HttpOutputMessage outputMessage)
+        throws IOException, HttpMessageNotWritableException {
+        write(contentType, outputMessage, counting -> delegate.write(t, type, contentType, counting));
+    }
+
+    private void write(MediaType contentType, HttpOutputMessage outputMessage, Write write) throws IOException {
+        CountingHttpOutputMessage counting = new CountingHttpOutputMessage(outputMessage);
+        ServerTiming serverTiming = ServerTiming.current();
+        if (serverTiming != null) {
+            serverTiming.enter();
+        }
+
+        long start = System.nanoTime();
+        long nanos;
+        try {
+            write.to(counting);
+        } finally {
+            nanos = System.nanoTime() - start;
+            if (serverTiming != null) {
+                serverTiming.exit(PipelineMetrics.SERIALIZATION, nanos);
+            }
+        }
+        pipelineMetrics.recordSerialization(contentType, nanos, counting.getCount());
+    }
+
+    private interface Write {
+
+        void to(HttpOutputMessage outputMessage) throws IOException;
+    }
+
+    @RequiredArgsConstructor
+    private static class CountingHttpOutputMessage implements HttpOutputMessage {
+
+        private final HttpOutputMessage outputMessage;
+        private CountingOutputStream body;
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CountingOutputStream(outputMessage.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return outputMessage.getHeaders();
+        }
+
+        long getCount() {
+            return body != null ? body.getCount() : 0;
+        }
+    }
+
+}
@@ -20,14 +20,14 @@
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.root;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.UriTemplate.of;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 import static org.springframework.http.ResponseEntity.ok;
-import static org.springframework.web.util.UriComponentsBuilder.fromUri;
+import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
 import java.util.List;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.LinkTemplate;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -48,6 +48,9 @@ public class RootController {
     static final String REL_INBOXES = "inboxes";
     static final String PATH_ROOT = "/api";
 
+    private static final LinkTemplate ROOT = LinkTemplate.of(RootController.class, "root");
+    private static final LinkTemplate INBOXES = LinkTemplate.of(InboxController.class, "findAll");
+
     @NonNull
     private final HateoasPageableHandlerMethodArgumentResolver pageableResolver;
 
@@ -61,17 +64,17 @@ public class RootController {
     }
 
     private Link inboxesLink() {
-        Link inboxesLink = linkTo(methodOn(InboxController.class).findAll(null)).withRel(REL_INBOXES);
+        String href = INBOXES.expand();
 
-        UriComponentsBuilder builder = fromUri(inboxesLink.getTemplate().expand());
+        UriComponentsBuilder builder = fromUriString(href);
         TemplateVariables templateVariables = pageableResolver.getPaginationTemplateVariables(null, builder.build());
 
-        UriTemplate template = of(inboxesLink.getHref()).with(templateVariables);
+        UriTemplate template = of(href).with(templateVariables);
         return new Link(template.toString(), REL_INBOXES);
     }
 
     private static Link selfLink() {
-        return linkTo(methodOn(RootController.class).root()).withSelfRel();
+        return ROOT.link(SELF);
     }
 
 }
@@ -0,0 +1,188 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Maps.newHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+final class Checkpoint {
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x48464350;
+
+    private final Path path;
+    @Getter
+    private final long position;
+    private final Map<String, Section> sections;
+
+    void read(@NonNull String name, @NonNull CheckpointReader reader) throws IOException {
+        Section section = sections.get(name);
+        if (section == null) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            checkState(section.checksum == checksum(channel, section.offset, section.length),
+                "Section '%s' of checkpoint '%s' is corrupted!", name, path);
+            reader.read(new CheckpointInput(channel, section.offset, section.length));
+        }
+    }
+
+    static Checkpoint write(@NonNull Path directory, long position, @NonNull Collection<? extends Checkpointable> sources)
+        throws IOException {
+        Path path = directory.resolve(format("%s%020d%s", PREFIX, position, SUFFIX));
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        Map<String, Section> sections = newHashMap();
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            DataOutputStream header = new DataOutputStream(Channels.newOutputStream(channel));
+            header.writeInt(MAGIC);
+            header.writeLong(position);
+            header.writeInt(sources.size());
+
+            for (Checkpointable source : sources) {
+                header.writeUTF(source.getCheckpointName());
+                long lengthAt = channel.position();
+                header.writeLong(0L);
+                header.writeInt(0);
+
+                long offset = channel.position();
+                CheckedOutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32());
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+                source.writeCheckpoint(new CheckpointOutput(output));
+                output.flush();
+
+                long length = channel.position() - offset;
+                int checksum = (int) checked.getChecksum().getValue();
+                ByteBuffer patch = ByteBuffer.allocate(12).putLong(length).putInt(checksum);
+                patch.flip();
+                channel.write(patch, lengthAt);
+                sections.put(source.getCheckpointName(), new Section(offset, length, checksum));
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporary, path, ATOMIC_MOVE);
+        syncDirectory(directory);
+        return new Checkpoint(path, position, sections);
+    }
+
+    static Optional<Checkpoint> latest(@NonNull Path directory) throws IOException {
+        List<Path> checkpoints = list(directory);
+        if (checkpoints.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(open(checkpoints.get(checkpoints.size() - 1)));
+    }
+
+    static List<Path> list(@NonNull Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(toList());
+        }
+    }
+
+    static long positionOf(@NonNull Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static Checkpoint open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+            checkState(input.readInt() == MAGIC, "File '%s' is not a checkpoint!", path);
+            long position = input.readLong();
+            int count = input.readInt();
+
+            Map<String, Section> sections = newHashMap();
+            for (int i = 0; i < count; i++) {
+                String name = input.readUTF();
+                long length = input.readLong();
+                int checksum = input.readInt();
+                long offset = channel.position();
+                sections.put(name, new Section(offset, length, checksum));
+                channel.position(offset + length);
+            }
+            return new Checkpoint(path, position, sections);
+        }
+    }
+
+    private static int checksum(FileChannel channel, long offset, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long done = 0; done < length;) {
+            long size = min(CheckpointInput.WINDOW_SIZE, length - done);
+            crc.update(channel.map(READ_ONLY, offset + done, size));
+            done += size;
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform allows to open a directory, the rename is still atomic there.
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Section {
+
+        private final long offset;
+        private final long length;
+        private final int checksum;
+    }
+
+}
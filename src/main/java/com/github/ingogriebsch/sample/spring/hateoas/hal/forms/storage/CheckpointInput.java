@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import lombok.NonNull;
+
+public class CheckpointInput {
+
+    static final int WINDOW_SIZE = 1 << 28;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private long windowStart;
+    private ByteBuffer window;
+
+    CheckpointInput(@NonNull FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return require(1).get() != 0;
+    }
+
+    public long readLong() throws IOException {
+        return require(8).getLong();
+    }
+
+    public String readString() throws IOException {
+        int length = require(4).getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        require(length).get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private ByteBuffer require(int length) throws IOException {
+        if (position + length > end) {
+            throw new EOFException("Checkpoint section ended unexpectedly!");
+        }
+
+        // Sections may exceed what a single mapping can address, so they are read through a sliding window.
+        if (window == null || position + length > windowStart + window.limit()) {
+            checkState(length <= WINDOW_SIZE, "Value of %s bytes exceeds the checkpoint window!", length);
+            windowStart = position;
+            window = channel.map(READ_ONLY, windowStart, min(WINDOW_SIZE, end - windowStart));
+        }
+
+        window.position((int) (position - windowStart));
+        position += length;
+        return window;
+    }
+
+}
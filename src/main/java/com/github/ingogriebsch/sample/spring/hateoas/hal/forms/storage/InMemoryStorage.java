@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import lombok.NonNull;
+
+public class InMemoryStorage implements Storage {
+
+    @Override
+    public long write(@NonNull Mutation mutation) {
+        return 0L;
+    }
+
+    @Override
+    public void sync(long position) {
+    }
+
+    @Override
+    public void published(long position) {
+    }
+
+    @Override
+    public long restore(@NonNull String section, @NonNull CheckpointReader reader) {
+        return 0L;
+    }
+
+    @Override
+    public void replay(long position, @NonNull Consumer<? super Mutation> consumer) {
+    }
+
+    @Override
+    public void checkpoint(@NonNull Collection<? extends Checkpointable> sections) {
+    }
+
+}
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.Striped;
+import lombok.NonNull;
+
+public class Journal {
+
+    private static final int STRIPES = 64;
+
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+    private final Storage storage;
+
+    public Journal(@NonNull Storage storage) {
+        this.storage = storage;
+    }
+
+    public <R> R apply(@NonNull Object key, @NonNull Supplier<R> change,
+        @NonNull Function<? super R, ? extends Mutation> mutationOf, @NonNull Consumer<? super R> publish) {
+        return apply(locks.get(key), change, mutationOf, publish);
+    }
+
+    // The change is prepared, logged, committed and published under the lock guarding the affected entities, so the log sees
+    // mutations of the same entity in the order they were applied. Publishing only after the commit keeps readers, and the
+    // entity tags handed out to them, from ever observing a change a crash could still lose. Writers holding other locks keep
+    // filling the same group commit in the meantime.
+    public <R> R apply(@NonNull Lock lock, @NonNull Supplier<R> change,
+        @NonNull Function<? super R, ? extends Mutation> mutationOf, @NonNull Consumer<? super R> publish) {
+        lock.lock();
+        try {
+            R result = change.get();
+            Mutation mutation = mutationOf.apply(result);
+            if (mutation == null) {
+                publish.accept(result);
+                return result;
+            }
+
+            long position = storage.write(mutation);
+            try {
+                storage.sync(position);
+                publish.accept(result);
+            } finally {
+                storage.published(position);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,422 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class MappedLogStorage implements Storage, Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(FAIL_ON_UNKNOWN_PROPERTIES);
+    private final Lock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Condition caughtUp = lock.newCondition();
+    // Positions of the mutations which are written but not published yet, a checkpoint must not cover them before they are.
+    private final SortedSet<Long> unpublished = new TreeSet<>();
+    private final Path directory;
+    private final int segmentSize;
+    private final Thread committer;
+
+    private volatile Checkpoint checkpoint;
+    private Segment segment;
+    private long writePosition;
+    private long commitPosition;
+    private RuntimeException failure;
+    private boolean closed;
+
+    public MappedLogStorage(@NonNull Path directory, int segmentSize) throws IOException {
+        checkArgument(segmentSize > FRAME_HEADER_SIZE, "Segment size must be greater than %s but is %s!", FRAME_HEADER_SIZE,
+            segmentSize);
+        this.directory = createDirectories(directory);
+        this.segmentSize = segmentSize;
+
+        checkpoint = Checkpoint.latest(directory).orElse(null);
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            segment = Segment.open(directory, checkpoint != null ? checkpoint.getPosition() : 0L, segmentSize);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            segment = Segment.open(directory, baseOffsetOf(last), segmentSize);
+            segment.recover();
+        }
+        writePosition = commitPosition = segment.position();
+        log.info("Opened mutation log in '{}' at position {}.", directory, writePosition);
+
+        committer = new Thread(this::commit, "mapped-log-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public long write(@NonNull Mutation mutation) {
+        List<byte[]> payloads = newArrayList();
+        frame(mutation, payloads);
+
+        lock.lock();
+        try {
+            checkState(!closed, "Mutation log is already closed!");
+            for (byte[] payload : payloads) {
+                if (segment.buffer.remaining() < FRAME_HEADER_SIZE + payload.length) {
+                    roll();
+                }
+                segment.write(payload);
+                writePosition = segment.position();
+            }
+            unpublished.add(writePosition);
+            written.signal();
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sync(long position) {
+        lock.lock();
+        try {
+            while (commitPosition < position) {
+                if (failure != null) {
+                    throw new IllegalStateException("Mutation log could not be committed!", failure);
+                }
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void published(long position) {
+        lock.lock();
+        try {
+            unpublished.remove(position);
+            caughtUp.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long restore(@NonNull String section, @NonNull CheckpointReader reader) {
+        if (checkpoint == null) {
+            return 0L;
+        }
+
+        try {
+            checkpoint.read(section, reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return checkpoint.getPosition();
+    }
+
+    @Override
+    public void replay(long position, @NonNull Consumer<? super Mutation> consumer) {
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i < segments.size(); i++) {
+                if (i + 1 < segments.size() && baseOffsetOf(segments.get(i + 1)) <= position) {
+                    continue;
+                }
+
+                long baseOffset = baseOffsetOf(segments.get(i));
+                try (FileChannel channel = FileChannel.open(segments.get(i), READ)) {
+                    ByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+                    long start = baseOffset;
+                    byte[] payload;
+                    while ((payload = readFrame(buffer)) != null) {
+                        if (start >= position) {
+                            consumer.accept(objectMapper.readValue(payload, Mutation.class));
+                        }
+                        start = baseOffset + buffer.position();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void checkpoint(@NonNull Collection<? extends Checkpointable> sections) {
+        long position;
+        lock.lock();
+        try {
+            position = writePosition;
+            // Mutations are published after they are written, so the ones written up to the position are waited for. Writers
+            // only hold the lock of their own entities meanwhile, so they never wait for a checkpoint in turn.
+            while (!unpublished.isEmpty() && unpublished.first() <= position) {
+                caughtUp.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (checkpoint != null && checkpoint.getPosition() == position) {
+            return;
+        }
+
+        // Everything up to the position is published in memory now, so the sections describe at least that state. Mutations
+        // published after it are replayed on top, which is harmless because replaying is idempotent.
+        sync(position);
+        try {
+            checkpoint = Checkpoint.write(directory, position, sections);
+            truncate(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Wrote checkpoint in '{}' at position {}.", directory, position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            written.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+    }
+
+    private void commit() {
+        while (true) {
+            Segment current;
+            long position;
+            lock.lock();
+            try {
+                while (!closed && commitPosition == writePosition) {
+                    written.awaitUninterruptibly();
+                }
+                if (commitPosition == writePosition) {
+                    return;
+                }
+                current = segment;
+                position = writePosition;
+            } finally {
+                lock.unlock();
+            }
+
+            // Forcing happens outside of the lock so that appenders keep filling the next group while this one is flushed.
+            RuntimeException error = null;
+            try {
+                current.buffer.force();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    log.error("Failed to commit mutation log in '{}'!", directory, error);
+                    failure = error;
+                    closed = true;
+                } else {
+                    commitPosition = Math.max(commitPosition, position);
+                }
+                committed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll() {
+        segment.buffer.force();
+        try {
+            segment.close();
+            segment = Segment.open(directory, writePosition, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitPosition = writePosition;
+        committed.signalAll();
+        log.debug("Rolled mutation log in '{}' at position {}.", directory, writePosition);
+    }
+
+    // A mutation which does not fit into a segment is divided if possible. Its parts are appended back to back, so a crash can
+    // only lose a tail of them, which was never acknowledged to the writer.
+    private void frame(Mutation mutation, List<byte[]> payloads) {
+        byte[] payload = serialize(mutation);
+        int frameSize = FRAME_HEADER_SIZE + payload.length;
+        if (frameSize <= segmentSize) {
+            payloads.add(payload);
+            return;
+        }
+
+        checkArgument(mutation instanceof DivisibleMutation && ((DivisibleMutation) mutation).isDivisible(),
+            "Mutation of %s bytes does not fit into a segment of %s bytes!", frameSize, segmentSize);
+        ((DivisibleMutation) mutation).divide().forEach(part -> frame(part, payloads));
+    }
+
+    private byte[] serialize(Mutation mutation) {
+        try {
+            return objectMapper.writeValueAsBytes(mutation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void truncate(long position) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size() && baseOffsetOf(segments.get(i + 1)) <= position; i++) {
+            Files.delete(segments.get(i));
+        }
+        for (Path path : Checkpoint.list(directory)) {
+            if (Checkpoint.positionOf(path) < position) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().collect(toList());
+        }
+    }
+
+    private static long baseOffsetOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] readFrame(ByteBuffer buffer) {
+        if (buffer.remaining() < FRAME_HEADER_SIZE) {
+            return null;
+        }
+
+        buffer.mark();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.reset();
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        if (checksum != checksum(payload)) {
+            buffer.reset();
+            return null;
+        }
+        return payload;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @RequiredArgsConstructor
+    private static final class Segment {
+
+        private final long baseOffset;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        static Segment open(Path directory, long baseOffset, int size) throws IOException {
+            Path path = directory.resolve(format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+            FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+            return new Segment(baseOffset, channel, channel.map(READ_WRITE, 0, size));
+        }
+
+        long position() {
+            return baseOffset + buffer.position();
+        }
+
+        void write(byte[] payload) {
+            buffer.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        }
+
+        void recover() {
+            while (readFrame(buffer) != null) {
+            }
+
+            // A torn or corrupted frame at the tail is dropped, so that new frames are not followed by stale bytes.
+            int position = buffer.position();
+            if (buffer.remaining() >= 4 && buffer.getInt(position) != 0) {
+                while (buffer.hasRemaining()) {
+                    buffer.put((byte) 0);
+                }
+                buffer.force();
+                buffer.position(position);
+            }
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+}
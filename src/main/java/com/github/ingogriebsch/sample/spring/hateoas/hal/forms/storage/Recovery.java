@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Sets.newHashSet;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Versioned;
+import lombok.NonNull;
+
+public class Recovery<T extends Versioned> {
+
+    private final List<T> base = newArrayList();
+    private final SortedMap<Long, T> changed = new TreeMap<>();
+    private final Set<Long> removed = newHashSet();
+    private long maxId;
+
+    public void reserved(long id) {
+        maxId = Math.max(maxId, id);
+    }
+
+    public void restored(@NonNull T entity) {
+        checkArgument(base.isEmpty() || base.get(base.size() - 1).getId() < entity.getId(),
+            "Entities must be restored by strictly ascending id!");
+        reserved(entity.getId());
+        base.add(entity);
+    }
+
+    public void saved(@NonNull T entity) {
+        Long id = entity.getId();
+        reserved(id);
+        if (removed.contains(id)) {
+            return;
+        }
+
+        T current = changed.containsKey(id) ? changed.get(id) : fromBase(id);
+        if (current == null || current.getVersion() < entity.getVersion()) {
+            changed.put(id, entity);
+        }
+    }
+
+    public void removed(@NonNull Long id) {
+        reserved(id);
+        removed.add(id);
+        changed.remove(id);
+    }
+
+    public List<T> values() {
+        List<T> values = newArrayListWithCapacity(base.size() + changed.size());
+        Iterator<Map.Entry<Long, T>> changes = changed.entrySet().iterator();
+        Map.Entry<Long, T> change = changes.hasNext() ? changes.next() : null;
+        for (T entity : base) {
+            while (change != null && change.getKey() < entity.getId()) {
+                values.add(change.getValue());
+                change = changes.hasNext() ? changes.next() : null;
+            }
+            if (change != null && change.getKey().equals(entity.getId())) {
+                values.add(change.getValue());
+                change = changes.hasNext() ? changes.next() : null;
+            } else if (!removed.contains(entity.getId())) {
+                values.add(entity);
+            }
+        }
+        while (change != null) {
+            values.add(change.getValue());
+            change = changes.hasNext() ? changes.next() : null;
+        }
+        return values;
+    }
+
+    public long maxId() {
+        return maxId;
+    }
+
+    private T fromBase(long id) {
+        int low = 0;
+        int high = base.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = base.get(middle).getId();
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return base.get(middle);
+            }
+        }
+        return null;
+    }
+
+}
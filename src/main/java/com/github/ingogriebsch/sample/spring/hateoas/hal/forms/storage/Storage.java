@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import lombok.NonNull;
+
+public interface Storage {
+
+    long write(@NonNull Mutation mutation);
+
+    void sync(long position);
+
+    // Tells that the mutation written at the position is applied in memory, or never will be, so a checkpoint may cover it.
+    void published(long position);
+
+    default void append(@NonNull Mutation mutation) {
+        long position = write(mutation);
+        try {
+            sync(position);
+        } finally {
+            published(position);
+        }
+    }
+
+    long restore(@NonNull String section, @NonNull CheckpointReader reader);
+
+    void replay(long position, @NonNull Consumer<? super Mutation> consumer);
+
+    void checkpoint(@NonNull Collection<? extends Checkpointable> sections);
+
+}
@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static java.lang.Math.toIntExact;
+
+import java.io.IOException;
+import java.util.List;
+
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+public class StorageConfiguration {
+
+    @Bean
+    public Storage storage(@NonNull StorageProperties storageProperties) throws IOException {
+        if (storageProperties.getDirectory() == null) {
+            return new InMemoryStorage();
+        }
+        return new MappedLogStorage(storageProperties.getDirectory(), toIntExact(storageProperties.getSegmentSize().toBytes()));
+    }
+
+    @Bean
+    @ConditionalOnProperty("storage.directory")
+    public Checkpointer checkpointer(@NonNull Storage storage, @NonNull List<Checkpointable> checkpointables,
+        @NonNull StorageProperties storageProperties) {
+        return new Checkpointer(storage, checkpointables, storageProperties.getCheckpointInterval());
+    }
+
+}
@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.decode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class CursorsTest {
+
+    @Nested
+    class Encode {
+
+        @Test
+        public void throws_exception_if_input_is_null() {
+            assertThrows(NullPointerException.class, () -> encode(null));
+        }
+
+        @Test
+        public void returns_cursor_which_does_not_expose_the_id() {
+            assertThat(encode(42L)).isNotEmpty().doesNotContain("42");
+        }
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        public void returns_null_if_input_is_empty() {
+            assertThat(decode(null)).isNull();
+            assertThat(decode("")).isNull();
+        }
+
+        @Test
+        public void returns_id_of_encoded_cursor() {
+            assertThat(decode(encode(42L))).isEqualTo(42L);
+        }
+
+        @Test
+        public void throws_exception_if_input_is_malformed() {
+            assertThrows(IllegalArgumentException.class, () -> decode("!!"));
+            assertThrows(IllegalArgumentException.class, () -> decode("Zm9v"));
+        }
+    }
+
+}
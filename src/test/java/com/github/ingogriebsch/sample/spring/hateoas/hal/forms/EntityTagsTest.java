@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.newArrayList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+
+import lombok.Value;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+public class EntityTagsTest {
+
+    @Nested
+    class Of {
+
+        @Test
+        public void throws_exception_if_input_is_null() {
+            assertThrows(NullPointerException.class, () -> EntityTags.of((Versioned) null));
+        }
+
+        @Test
+        public void returns_quoted_tag_changing_with_version() {
+            String eTag = EntityTags.of(new Entity(1L, 0));
+            assertThat(eTag).startsWith("\"").endsWith("\"");
+            assertThat(eTag).isEqualTo(EntityTags.of(new Entity(1L, 0))).isNotEqualTo(EntityTags.of(new Entity(1L, 1)));
+        }
+
+        @Test
+        public void returns_tag_of_page_changing_with_content_version_and_total() {
+            String eTag = EntityTags.of(new PageImpl<>(newArrayList(new Entity(1L, 0), new Entity(2L, 0)), of(0, 2), 3));
+            assertThat(eTag)
+                .isEqualTo(EntityTags.of(new PageImpl<>(newArrayList(new Entity(1L, 0), new Entity(2L, 0)), of(0, 2), 3)));
+            assertThat(eTag)
+                .isNotEqualTo(EntityTags.of(new PageImpl<>(newArrayList(new Entity(1L, 0), new Entity(2L, 1)), of(0, 2), 3)));
+            assertThat(eTag)
+                .isNotEqualTo(EntityTags.of(new PageImpl<>(newArrayList(new Entity(1L, 0), new Entity(2L, 0)), of(0, 2), 4)));
+        }
+    }
+
+    @Nested
+    class VersionOf {
+
+        @Test
+        public void returns_null_if_tag_is_absent_or_wildcard() {
+            assertThat(EntityTags.versionOf(null, 1L)).isNull();
+            assertThat(EntityTags.versionOf("*", 1L)).isNull();
+        }
+
+        @Test
+        public void returns_version_of_tag_created_for_entity() {
+            assertThat(EntityTags.versionOf(EntityTags.of(new Entity(1L, 7)), 1L)).isEqualTo(7);
+        }
+
+        @Test
+        public void throws_exception_if_tag_does_not_denote_entity() {
+            assertThrows(IllegalArgumentException.class, () -> EntityTags.versionOf(EntityTags.of(new Entity(2L, 7)), 1L));
+            assertThrows(IllegalArgumentException.class, () -> EntityTags.versionOf("W/\"1.7\"", 1L));
+            assertThrows(IllegalArgumentException.class, () -> EntityTags.versionOf("\"1.x\"", 1L));
+        }
+    }
+
+    @Nested
+    class OkUnlessNotModified {
+
+        @Test
+        public void returns_ok_including_body_if_etag_does_not_match() {
+            ServletWebRequest request =
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse());
+
+            ResponseEntity<String> response = EntityTags.okUnlessNotModified(request, "\"1\"", () -> "body");
+            assertThat(response.getStatusCode()).isEqualTo(OK);
+            assertThat(response.getHeaders().getETag()).isEqualTo("\"1\"");
+            assertThat(response.getBody()).isEqualTo("body");
+        }
+
+        @Test
+        public void returns_not_modified_without_computing_body_if_etag_matches() {
+            MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/");
+            servletRequest.addHeader(IF_NONE_MATCH, "\"1\"");
+            ServletWebRequest request = new ServletWebRequest(servletRequest, new MockHttpServletResponse());
+
+            ResponseEntity<String> response = EntityTags.okUnlessNotModified(request, "\"1\"", () -> {
+                throw new AssertionError("Body must not be computed!");
+            });
+            assertThat(response.getStatusCode()).isEqualTo(NOT_MODIFIED);
+            assertThat(response.hasBody()).isFalse();
+        }
+    }
+
+    @Value
+    private static class Entity implements Versioned {
+
+        Long id;
+        long version;
+    }
+
+}
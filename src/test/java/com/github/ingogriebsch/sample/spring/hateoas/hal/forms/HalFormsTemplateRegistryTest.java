@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.context.i18n.LocaleContextHolder.getLocale;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
+import static org.springframework.hateoas.mediatype.hal.forms.HalFormsTemplate.DEFAULT_KEY;
+import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.PUT;
+
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.forms.HalFormsTemplate;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+public class HalFormsTemplateRegistryTest {
+
+    private static final LinkTemplate FIND_ONE = LinkTemplate.of(SampleController.class, "findOne");
+    private static final LinkTemplate UPDATE = LinkTemplate.of(SampleController.class, "update");
+    private static final LinkTemplate DELETE_ONE = LinkTemplate.of(SampleController.class, "delete");
+
+    @Nested
+    class Register {
+
+        @Test
+        public void throws_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class, () -> registry().register(null));
+        }
+    }
+
+    @Nested
+    class FindTemplates {
+
+        @Test
+        public void throws_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class, () -> registry().findTemplates(null));
+        }
+
+        @Test
+        public void returns_empty_map_if_model_has_no_self_link() {
+            assertThat(registry().findTemplates(new RepresentationModel<>())).isEmpty();
+        }
+
+        @Test
+        public void returns_templates_for_all_but_the_get_affordances() {
+            Map<String, HalFormsTemplate> templates = registry().findTemplates(model(1L));
+
+            assertThat(templates).containsOnlyKeys(DEFAULT_KEY, "delete");
+            assertThat(templates.get(DEFAULT_KEY).getHttpMethod()).isEqualTo(PUT);
+            assertThat(templates.get(DEFAULT_KEY).getTitle()).isEqualTo("Update item");
+            assertThat(templates.get(DEFAULT_KEY).getProperties()).extracting("name", "prompt", "required")
+                .containsExactly(tuple("name", "Item name", true));
+            assertThat(templates.get("delete").getHttpMethod()).isEqualTo(DELETE);
+            assertThat(templates.get("delete").getProperties()).isEmpty();
+        }
+
+        @Test
+        public void reuses_templates_for_models_with_the_same_affordances() {
+            HalFormsTemplateRegistry registry = registry().register(Item.class);
+
+            Map<String, HalFormsTemplate> first = registry.findTemplates(model(1L));
+            Map<String, HalFormsTemplate> second = registry.findTemplates(model(2L));
+
+            assertThat(second.get(DEFAULT_KEY)).isSameAs(first.get(DEFAULT_KEY));
+            assertThat(second.get("delete")).isSameAs(first.get("delete"));
+        }
+    }
+
+    private static RepresentationModel<?> model(Long id) {
+        String href = FIND_ONE.expand(id);
+        return new RepresentationModel<>(new Link(href, SELF).andAffordances(FIND_ONE.affordances(href))
+            .andAffordances(UPDATE.affordances(href)).andAffordances(DELETE_ONE.affordances(href)));
+    }
+
+    private static HalFormsTemplateRegistry registry() {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.addMessage("Item.name._prompt", getLocale(), "Item name");
+        messageSource.addMessage("_templates.update.title", getLocale(), "Update item");
+        return new HalFormsTemplateRegistry(MessageResolver.of(messageSource));
+    }
+
+    static class SampleController {
+
+        @GetMapping("/items/{id}")
+        public Object findOne(@PathVariable Long id) {
+            return null;
+        }
+
+        @PutMapping("/items/{id}")
+        public Object update(@PathVariable Long id, @RequestBody Item item) {
+            return null;
+        }
+
+        @DeleteMapping("/items/{id}")
+        public Object delete(@PathVariable Long id) {
+            return null;
+        }
+    }
+
+    static class Item {
+
+        @NotNull
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -0,0 +1,335 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.range;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class IndexedStoreTest {
+
+    @Nested
+    class Get {
+
+        @Test
+        public void should_throw_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class, () -> new IndexedStore<String>().get(null));
+        }
+
+        @Test
+        public void should_return_entity_if_known() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+
+            assertThat(store.get(1L)).contains("a");
+        }
+
+        @Test
+        public void should_return_empty_optional_if_not_known() {
+            assertThat(new IndexedStore<String>().get(1L)).isEmpty();
+        }
+    }
+
+    @Nested
+    class GetAll {
+
+        @Test
+        public void should_return_known_entities_ordered_by_id() {
+            IndexedStore<Long> store = new IndexedStore<>();
+            rangeClosed(1, 1000).forEach(id -> store.put(id, id));
+
+            assertThat(store.getAll(newArrayList(900L, 3L, 2000L, 300L, 3L))).containsExactly(3L, 300L, 900L);
+        }
+
+        @Test
+        public void should_return_empty_list_if_store_is_empty() {
+            assertThat(new IndexedStore<Long>().getAll(newArrayList(1L))).isEmpty();
+        }
+    }
+
+    @Nested
+    class Values {
+
+        @Test
+        public void should_return_entities_ordered_by_id() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(3L, "c");
+            store.put(1L, "a");
+            store.put(2L, "b");
+
+            assertThat(store.values()).containsExactly("a", "b", "c");
+        }
+
+        @Test
+        public void should_return_all_entities_if_put_concurrently() throws Exception {
+            IndexedStore<Long> store = new IndexedStore<>();
+
+            ExecutorService executor = newFixedThreadPool(4);
+            rangeClosed(1, 1000).forEach(id -> executor.execute(() -> store.put(id, id)));
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, SECONDS)).isTrue();
+
+            assertThat(store.values()).hasSize(1000).isSorted();
+            assertThat(store.size()).isEqualTo(1000);
+        }
+
+        @Test
+        public void should_return_requested_range_only() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+            store.put(3L, "c");
+            store.put(4L, "d");
+
+            assertThat(store.values(1, 2)).containsExactly("b", "c");
+            assertThat(store.values(3, 2)).containsExactly("d");
+            assertThat(store.values(4, 2)).isEmpty();
+        }
+    }
+
+    @Nested
+    class ValuesAfter {
+
+        @Test
+        public void should_return_values_following_the_given_id() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+            store.put(4L, "d");
+
+            assertThat(store.valuesAfter(null, 2)).containsExactly("a", "b");
+            assertThat(store.valuesAfter(2L, 2)).containsExactly("d");
+            assertThat(store.valuesAfter(3L, 2)).containsExactly("d");
+            assertThat(store.valuesAfter(4L, 2)).isEmpty();
+        }
+    }
+
+    @Nested
+    class Size {
+
+        @Test
+        public void should_count_replaced_entities_once() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(1L, "b");
+
+            assertThat(store.size()).isEqualTo(1);
+        }
+
+        @Test
+        public void should_not_count_removed_entities() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+            store.remove(1L);
+            store.remove(1L);
+
+            assertThat(store.size()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    class Update {
+
+        @Test
+        public void should_return_updated_entity_if_known() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+
+            Optional<String> updated = store.update(1L, e -> e + "b");
+            assertThat(updated).contains("ab");
+            assertThat(store.get(1L)).contains("ab");
+        }
+
+        @Test
+        public void should_return_empty_optional_if_not_known() {
+            assertThat(new IndexedStore<String>().update(1L, e -> e + "b")).isEmpty();
+        }
+
+        @Test
+        public void should_not_lose_updates_if_applied_concurrently() throws Exception {
+            IndexedStore<Long> store = new IndexedStore<>();
+            store.put(1L, 0L);
+
+            ExecutorService executor = newFixedThreadPool(4);
+            rangeClosed(1, 1000).forEach(i -> executor.execute(() -> store.update(1L, e -> e + 1)));
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, SECONDS)).isTrue();
+
+            assertThat(store.get(1L)).contains(1000L);
+        }
+    }
+
+    @Nested
+    class PutAll {
+
+        @Test
+        public void should_merge_entities_with_existing_ones() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(2L, "b");
+            store.put(4L, "d");
+
+            store.putAll(newArrayList("a", "B", "c", "e"), e -> "aBc-e".indexOf(e) + 1);
+
+            assertThat(store.values()).containsExactly("a", "B", "c", "d", "e");
+            assertThat(store.size()).isEqualTo(5);
+        }
+
+        @Test
+        public void should_append_entities_beyond_a_single_chunk() {
+            IndexedStore<Long> store = new IndexedStore<>();
+            store.put(1L, 1L);
+
+            store.putAll(rangeClosed(2, 1000).boxed().collect(toList()), Long::longValue);
+
+            assertThat(store.size()).isEqualTo(1000);
+            assertThat(store.values()).isSorted().hasSize(1000);
+            assertThat(store.values(500, 2)).containsExactly(501L, 502L);
+        }
+
+        @Test
+        public void should_throw_exception_if_entities_are_not_ordered_by_id() {
+            assertThrows(IllegalArgumentException.class,
+                () -> new IndexedStore<Long>().putAll(newArrayList(2L, 1L), Long::longValue));
+        }
+    }
+
+    @Nested
+    class Snapshot {
+
+        @Test
+        public void should_not_reflect_changes_published_after_it_was_taken() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+
+            IndexedStore.Snapshot<String> snapshot = store.snapshot();
+            store.put(3L, "c");
+            store.update(1L, e -> e + "a");
+            store.remove(2L);
+
+            assertThat(snapshot.size()).isEqualTo(2);
+            assertThat(snapshot.values(0, 10)).containsExactly("a", "b");
+            assertThat(store.values()).containsExactly("aa", "c");
+        }
+
+        @Test
+        public void should_behave_like_a_sorted_map_beyond_a_single_chunk() {
+            IndexedStore<Long> store = new IndexedStore<>();
+            TreeMap<Long, Long> expected = new TreeMap<>();
+
+            Random random = new Random(42);
+            for (int i = 0; i < 5000; i++) {
+                long id = random.nextInt(2000);
+                if (random.nextInt(4) == 0) {
+                    assertThat(store.remove(id)).isEqualTo(expected.remove(id) != null);
+                } else {
+                    store.put(id, (long) i);
+                    expected.put(id, (long) i);
+                }
+            }
+
+            List<Long> values = newArrayList(expected.values());
+            assertThat(store.size()).isEqualTo(expected.size());
+            assertThat(store.values()).containsExactlyElementsOf(values);
+            assertThat(store.values(700, 300)).containsExactlyElementsOf(values.subList(700, 1000));
+            assertThat(store.valuesAfter(1000L, 50))
+                .containsExactlyElementsOf(newArrayList(expected.tailMap(1000L, false).values()).subList(0, 50));
+            expected.forEach((id, value) -> assertThat(store.get(id)).contains(value));
+        }
+
+        @Test
+        public void should_behave_like_a_sorted_map_beyond_a_single_level_of_chunks() {
+            IndexedStore<Long> store = new IndexedStore<>();
+            TreeMap<Long, Long> expected = new TreeMap<>();
+
+            Random random = new Random(42);
+            for (int i = 0; i < 50000; i++) {
+                long id = random.nextInt(40000);
+                int operation = random.nextInt(8);
+                if (operation == 0) {
+                    assertThat(store.remove(id)).isEqualTo(expected.remove(id) != null);
+                } else if (operation == 1) {
+                    List<Long> ids = range(id, id + random.nextInt(600)).boxed().collect(toList());
+                    store.putAll(ids, Long::longValue);
+                    ids.forEach(each -> expected.put(each, each));
+                } else {
+                    store.put(id, (long) i);
+                    expected.put(id, (long) i);
+                }
+            }
+
+            List<Long> values = newArrayList(expected.values());
+            assertThat(store.size()).isEqualTo(expected.size());
+            assertThat(store.values()).containsExactlyElementsOf(values);
+            assertThat(newArrayList(store.snapshot())).containsExactlyElementsOf(values);
+            assertThat(store.values(20000, 700)).containsExactlyElementsOf(values.subList(20000, 20700));
+            assertThat(store.valuesAfter(30000L, 700))
+                .containsExactlyElementsOf(newArrayList(expected.tailMap(30000L, false).values()).subList(0, 700));
+            assertThat(store.getAll(newArrayList(expected.keySet()))).containsExactlyElementsOf(values);
+            expected.forEach((id, value) -> assertThat(store.get(id)).contains(value));
+        }
+    }
+
+    @Nested
+    class Remove {
+
+        @Test
+        public void should_return_true_and_drop_entity_if_known() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+
+            assertThat(store.remove(1L)).isTrue();
+            assertThat(store.get(1L)).isEmpty();
+            assertThat(store.values()).isEmpty();
+        }
+
+        @Test
+        public void should_return_false_if_not_known() {
+            assertThat(new IndexedStore<String>().remove(1L)).isFalse();
+        }
+
+        @Test
+        public void should_return_false_and_keep_entity_if_condition_does_not_hold() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+
+            assertThat(store.remove(1L, e -> e.equals("b"))).isFalse();
+            assertThat(store.get(1L)).contains("a");
+            assertThat(store.size()).isEqualTo(1);
+        }
+    }
+
+}
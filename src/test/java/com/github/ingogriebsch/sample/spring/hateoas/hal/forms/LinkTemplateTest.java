@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.hateoas.IanaLinkRelations.SELF;
+import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+import static org.springframework.http.HttpMethod.PUT;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.Affordance;
+import org.springframework.hateoas.AffordanceModel;
+import org.springframework.hateoas.Link;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+public class LinkTemplateTest {
+
+    @Nested
+    class Of {
+
+        @Test
+        public void throws_exception_if_method_is_unknown() {
+            assertThrows(RuntimeException.class, () -> LinkTemplate.of(SampleController.class, "unknown"));
+        }
+
+        @Test
+        public void throws_exception_if_method_is_not_mapped() {
+            assertThrows(RuntimeException.class, () -> LinkTemplate.of(SampleController.class, "unmapped"));
+        }
+    }
+
+    @Nested
+    class Expand {
+
+        @Test
+        public void returns_href_containing_the_path_variables() {
+            assertThat(LinkTemplate.of(SampleController.class, "findOne").expand(1L, 2L)).isEqualTo("/sample/1/items/2");
+        }
+
+        @Test
+        public void returns_href_containing_the_request_params() {
+            assertThat(LinkTemplate.of(SampleController.class, "findAll").expand(1L, "a b", 10))
+                .isEqualTo("/sample/1/items?after=a%20b&size=10");
+        }
+
+        @Test
+        public void returns_href_containing_collection_request_params_as_comma_separated_values() {
+            assertThat(LinkTemplate.of(SampleController.class, "findAll").expand(1L, newArrayList("a", "b")))
+                .isEqualTo("/sample/1/items?after=a,b");
+        }
+
+        @Test
+        public void skips_missing_request_params() {
+            assertThat(LinkTemplate.of(SampleController.class, "findAll").expand(1L)).isEqualTo("/sample/1/items");
+        }
+
+        @Test
+        public void throws_exception_if_called_with_too_many_arguments() {
+            assertThrows(IllegalArgumentException.class,
+                () -> LinkTemplate.of(SampleController.class, "findOne").expand(1L, 2L, 3L));
+        }
+    }
+
+    @Nested
+    class LinkTo {
+
+        @Test
+        public void returns_link_with_given_relation() {
+            Link link = LinkTemplate.of(SampleController.class, "findOne").link(SELF, 1L, 2L);
+            assertThat(link.getRel()).isEqualTo(SELF);
+            assertThat(link.getHref()).isEqualTo("/sample/1/items/2");
+        }
+    }
+
+    @Nested
+    class Affordances {
+
+        @Test
+        public void returns_affordance_named_after_the_method() {
+            List<Affordance> affordances = LinkTemplate.of(SampleController.class, "update").affordances("/sample/1/items/2");
+            assertThat(affordances).hasSize(1);
+
+            AffordanceModel affordanceModel = affordances.get(0).getAffordanceModel(HAL_FORMS_JSON);
+            assertThat(affordanceModel.getName()).isEqualTo("update");
+            assertThat(affordanceModel.getHttpMethod()).isEqualTo(PUT);
+            assertThat(affordanceModel.getURI()).isEqualTo("/sample/1/items/2");
+            assertThat(affordanceModel.getInput().stream()).extracting("name").containsExactly("name");
+        }
+    }
+
+    @RequestMapping("/sample")
+    static class SampleController {
+
+        @GetMapping("/{sampleId}/items")
+        public Object findAll(@PathVariable Long sampleId, @RequestParam("after") String after,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+            return null;
+        }
+
+        @GetMapping("/{sampleId}/items/{id}")
+        public Object findOne(@PathVariable Long sampleId, @PathVariable("id") Long itemId) {
+            return null;
+        }
+
+        @PutMapping("/{sampleId}/items/{id}")
+        public Object update(@PathVariable Long sampleId, @PathVariable("id") Long itemId, @RequestBody Item item) {
+            return null;
+        }
+
+        public Object unmapped() {
+            return null;
+        }
+    }
+
+    static class Item {
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -20,17 +20,25 @@
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
 
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.match;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.orderOf;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.toPage;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.PageUtils.withoutContent;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.newArrayList;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
 import java.util.List;
 
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
 
 public class PageUtilsTest {
 
@@ -83,7 +91,127 @@ public class PageUtilsTest {
 
         @Test
         public void throws_exception_if_input_is_null() {
-            assertThrows(NullPointerException.class, () -> toPage(null, null));
+            assertThrows(NullPointerException.class, () -> toPage((List<Object>) null, null));
+            assertThrows(NullPointerException.class, () -> toPage((IndexedStore<Object>) null, null));
+        }
+
+        @Test
+        public void returns_matching_page_if_input_is_a_store() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+            store.put(3L, "c");
+
+            Page<String> page = toPage(store, of(1, 2));
+            assertThat(page.getContent()).containsExactly("c");
+            assertThat(page.getTotalElements()).isEqualTo(3);
+        }
+
+        @Test
+        public void returns_empty_page_if_page_request_is_beyond_store() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+
+            Page<String> page = toPage(store, of(3, 2));
+            assertThat(page.getContent()).isEmpty();
+            assertThat(page.getTotalElements()).isEqualTo(1);
+        }
+
+    }
+
+    @Nested
+    class ToPageWithDirection {
+
+        @Test
+        public void returns_matching_page_in_descending_order() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "a");
+            store.put(2L, "b");
+            store.put(3L, "c");
+
+            assertThat(toPage(store, DESC, of(0, 2)).getContent()).containsExactly("c", "b");
+            assertThat(toPage(store, DESC, of(1, 2)).getContent()).containsExactly("a");
+            assertThat(toPage(store, DESC, of(2, 2)).getContent()).isEmpty();
+            assertThat(toPage(store, ASC, of(0, 2)).getContent()).containsExactly("a", "b");
+        }
+
+    }
+
+    @Nested
+    class ToPageOfIndex {
+
+        @Test
+        public void returns_page_and_total_of_the_same_snapshot() {
+            SortedIndex<String> byValue = new SortedIndex<>(value -> value);
+            IndexedStore<String> store = new IndexedStore<>(ColumnLayout.objects(), byValue);
+            store.put(1L, "b");
+            store.put(2L, "a");
+            store.put(3L, "b");
+
+            Page<String> page = toPage(store, byValue, DESC, of(0, 2));
+            assertThat(page.getContent()).containsExactly("b", "b");
+            assertThat(page.getTotalElements()).isEqualTo(3);
+
+            page = toPage(store, byValue, "b", ASC, of(1, 1));
+            assertThat(page.getContent()).containsExactly("b");
+            assertThat(page.getTotalElements()).isEqualTo(2);
+        }
+
+    }
+
+    @Nested
+    class ToPageOfIds {
+
+        @Test
+        public void returns_page_in_order_of_ids_skipping_unknown_ones() {
+            IndexedStore<String> store = new IndexedStore<>();
+            store.put(1L, "1");
+            store.put(2L, "2");
+            store.put(3L, "3");
+
+            Page<String> page = toPage(store, newArrayList(3L, 4L, 1L), Long::parseLong, of(0, 3), 7);
+            assertThat(page.getContent()).containsExactly("3", "1");
+            assertThat(page.getTotalElements()).isEqualTo(7);
+        }
+
+    }
+
+    @Nested
+    class OrderOf {
+
+        @Test
+        public void returns_empty_optional_if_unsorted() {
+            assertThat(orderOf(Sort.unsorted(), "id")).isEmpty();
+        }
+
+        @Test
+        public void returns_order_if_property_is_supported() {
+            assertThat(orderOf(Sort.by(DESC, "name"), "id", "name")).contains(Order.desc("name"));
+        }
+
+        @Test
+        public void throws_exception_if_property_is_not_supported_or_ambiguous() {
+            assertThrows(IllegalArgumentException.class, () -> orderOf(Sort.by("description"), "id", "name"));
+            assertThrows(IllegalArgumentException.class, () -> orderOf(Sort.by("name", "id"), "id", "name"));
+        }
+
+    }
+
+    @Nested
+    class WithoutContent {
+
+        @Test
+        public void throws_exception_if_input_is_null() {
+            assertThrows(NullPointerException.class, () -> withoutContent(null));
+        }
+
+        @Test
+        public void returns_page_keeping_position_and_totals() {
+            Page<String> page = withoutContent(new PageImpl<>(newArrayList("c", "d"), of(1, 2), 5));
+            assertThat(page.getContent()).isEmpty();
+            assertThat(page.getPageable()).isEqualTo(of(1, 2));
+            assertThat(page.getTotalElements()).isEqualTo(5);
+            assertThat(page.hasNext()).isTrue();
         }
 
     }
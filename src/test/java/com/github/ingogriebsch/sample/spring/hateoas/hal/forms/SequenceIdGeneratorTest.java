@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.IntStream.range;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class SequenceIdGeneratorTest {
+
+    @Nested
+    class Next {
+
+        @Test
+        public void should_return_ascending_ids_starting_after_initial_value() {
+            SequenceIdGenerator idGenerator = new SequenceIdGenerator(5L);
+            assertThat(idGenerator.next()).isEqualTo(6L);
+            assertThat(idGenerator.next()).isEqualTo(7L);
+        }
+
+        @Test
+        public void should_return_unique_ids_if_called_concurrently() throws Exception {
+            SequenceIdGenerator idGenerator = new SequenceIdGenerator();
+            Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+            ExecutorService executor = newFixedThreadPool(4);
+            range(0, 1000).forEach(i -> executor.execute(() -> ids.add(idGenerator.next())));
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, SECONDS)).isTrue();
+
+            assertThat(ids).hasSize(1000);
+        }
+    }
+
+    @Nested
+    class NextBlock {
+
+        @Test
+        public void should_throw_exception_if_count_is_not_positive() {
+            assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator().next(0));
+        }
+
+        @Test
+        public void should_reserve_the_whole_block() {
+            SequenceIdGenerator idGenerator = new SequenceIdGenerator();
+            assertThat(idGenerator.next(10)).isEqualTo(1L);
+            assertThat(idGenerator.next()).isEqualTo(11L);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+import static java.util.stream.Collectors.toList;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.reverse;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort.Direction;
+
+public class SortedIndexTest {
+
+    private static final SortedIndex<Entity> BY_NAME = new SortedIndex<>(Entity::getName);
+
+    @Nested
+    class Values {
+
+        @Test
+        public void should_throw_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class, () -> store().snapshot().values(BY_NAME, null, 0, 10));
+        }
+
+        @Test
+        public void should_throw_exception_if_index_is_not_maintained_by_the_store() {
+            assertThrows(IllegalArgumentException.class,
+                () -> store().snapshot().values(new SortedIndex<>(Entity::getName), ASC, 0, 10));
+        }
+
+        @Test
+        public void should_return_entities_ordered_by_key_and_id() {
+            IndexedStore<Entity> store = store();
+            put(store, new Entity(1L, "b"));
+            put(store, new Entity(2L, "a"));
+            put(store, new Entity(3L, "b"));
+            put(store, new Entity(4L, null));
+
+            assertThat(ids(store, ASC, 0, 10)).containsExactly(4L, 2L, 1L, 3L);
+            assertThat(ids(store, DESC, 0, 10)).containsExactly(3L, 1L, 2L, 4L);
+            assertThat(ids(store, ASC, 1, 2)).containsExactly(2L, 1L);
+        }
+
+        @Test
+        public void should_return_entities_of_matching_key_only() {
+            IndexedStore<Entity> store = store();
+            store.putAll(newArrayList(new Entity(1L, "b"), new Entity(2L, "a"), new Entity(3L, "b")), Entity::getId);
+
+            assertThat(ids(store, "b", ASC, 0, 10)).containsExactly(1L, 3L);
+            assertThat(ids(store, "b", DESC, 1, 10)).containsExactly(1L);
+            assertThat(ids(store, "c", ASC, 0, 10)).isEmpty();
+            assertThat(store.snapshot().count(BY_NAME, "b")).isEqualTo(2);
+        }
+
+        @Test
+        public void should_not_see_changes_made_after_the_snapshot_was_taken() {
+            IndexedStore<Entity> store = store();
+            put(store, new Entity(1L, "a"));
+            put(store, new Entity(2L, "a"));
+
+            IndexedStore.Snapshot<Entity> snapshot = store.snapshot();
+            store.remove(1L);
+            put(store, new Entity(2L, "b"));
+            put(store, new Entity(3L, "a"));
+
+            assertThat(snapshot.values(BY_NAME, "a", ASC, 0, 10)).containsExactly(new Entity(1L, "a"), new Entity(2L, "a"));
+            assertThat(snapshot.count(BY_NAME, "a")).isEqualTo(2);
+            assertThat(ids(store, "a", ASC, 0, 10)).containsExactly(3L);
+        }
+
+        @Test
+        public void should_behave_like_a_sorted_set_beyond_a_single_leaf() {
+            IndexedStore<Entity> store = store();
+            Comparator<Entity> order =
+                Comparator.comparing(Entity::getName, nullsFirst(naturalOrder())).thenComparing(Entity::getId);
+            TreeSet<Entity> expected = new TreeSet<>(order);
+            Map<Long, Entity> entities = newHashMap();
+
+            String[] names = { null, "", "a", "ab", "abcd", "abcde", "abcdf", "b", "\uffffz", "report", "reports" };
+            Random random = new Random(42);
+            for (int i = 0; i < 20000; i++) {
+                long id = random.nextInt(5000);
+                Entity entity = new Entity(id, names[random.nextInt(names.length)]);
+                Entity previous = entities.remove(id);
+                if (previous != null) {
+                    expected.remove(previous);
+                    if (random.nextInt(3) == 0) {
+                        store.remove(id);
+                        continue;
+                    }
+                }
+                put(store, entity);
+                expected.add(entity);
+                entities.put(id, entity);
+            }
+
+            List<Long> ids = expected.stream().map(Entity::getId).collect(toList());
+            assertThat(ids(store, ASC, 0, Integer.MAX_VALUE)).containsExactlyElementsOf(ids);
+            assertThat(ids(store, ASC, 1000, 50)).containsExactlyElementsOf(ids.subList(1000, 1050));
+            assertThat(ids(store, DESC, 1000, 50)).containsExactlyElementsOf(reverse(ids).subList(1000, 1050));
+            for (String name : names) {
+                List<Long> matching =
+                    expected.stream().filter(e -> Objects.equals(e.getName(), name)).map(Entity::getId).collect(toList());
+                assertThat(store.snapshot().count(BY_NAME, name)).isEqualTo(matching.size());
+                assertThat(ids(store, name, ASC, 10, 20)).containsExactlyElementsOf(matching.subList(10, 30));
+                assertThat(ids(store, name, DESC, 0, 5)).containsExactlyElementsOf(reverse(matching).subList(0, 5));
+            }
+        }
+    }
+
+    @Nested
+    class Put {
+
+        @Test
+        public void should_move_entity_to_its_new_key() {
+            IndexedStore<Entity> store = store();
+            put(store, new Entity(1L, "a"));
+            put(store, new Entity(2L, "b"));
+
+            put(store, new Entity(1L, "c"));
+            assertThat(ids(store, ASC, 0, 10)).containsExactly(2L, 1L);
+            assertThat(store.snapshot().count(BY_NAME, "a")).isEqualTo(0);
+        }
+
+        @Test
+        public void should_keep_entry_if_key_did_not_change() {
+            AtomicInteger reads = new AtomicInteger();
+            SortedIndex<Entity> counting = new SortedIndex<>(entity -> {
+                reads.incrementAndGet();
+                return entity.getName();
+            });
+            IndexedStore<Entity> counted = new IndexedStore<>(ColumnLayout.objects(), counting);
+            put(counted, new Entity(1L, "a"));
+            reads.set(0);
+
+            put(counted, new Entity(1L, "a"));
+            assertThat(reads.get()).isEqualTo(2);
+            assertThat(counted.snapshot().values(counting, "a", ASC, 0, 10)).containsExactly(new Entity(1L, "a"));
+        }
+    }
+
+    @Nested
+    class Remove {
+
+        @Test
+        public void should_drop_entity() {
+            IndexedStore<Entity> store = store();
+            put(store, new Entity(1L, "a"));
+            put(store, new Entity(2L, "a"));
+
+            store.remove(1L);
+            assertThat(ids(store, ASC, 0, 10)).containsExactly(2L);
+        }
+    }
+
+    private static IndexedStore<Entity> store() {
+        return new IndexedStore<>(ColumnLayout.objects(), BY_NAME);
+    }
+
+    private static void put(IndexedStore<Entity> store, Entity entity) {
+        store.put(entity.getId(), entity);
+    }
+
+    private static List<Long> ids(IndexedStore<Entity> store, Direction direction, long offset, int limit) {
+        return store.snapshot().values(BY_NAME, direction, offset, limit).stream().map(Entity::getId).collect(toList());
+    }
+
+    private static List<Long> ids(IndexedStore<Entity> store, String name, Direction direction, long offset, int limit) {
+        return store.snapshot().values(BY_NAME, name, direction, offset, limit).stream().map(Entity::getId).collect(toList());
+    }
+
+    @AllArgsConstructor
+    @Data
+    private static class Entity {
+
+        private Long id;
+        private String name;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms;
+
+import static java.util.Arrays.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.domain.PageRequest.of;
+
+import java.util.List;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.Inbox;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxInput;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.Message;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class StartupTest {
+
+    @Nested
+    class Run {
+
+        @Test
+        public void should_insert_three_inboxes_with_five_messages_each_by_default() throws Exception {
+            InboxService inboxService = new InboxService();
+            MessageService messageService = new MessageService();
+            new Startup(inboxService, messageService, new StartupProperties()).run();
+
+            List<Inbox> inboxes = inboxService.findAll(of(0, 10)).getContent();
+            assertThat(inboxes).extracting(Inbox::getName).containsExactly("Inbox 1", "Inbox 2", "Inbox 3");
+            for (Inbox inbox : inboxes) {
+                assertThat(messageService.findAll(inbox.getId(), of(0, 10)).getContent()).extracting(Message::getTitle)
+                    .containsExactlyInAnyOrder("Message 1", "Message 2", "Message 3", "Message 4", "Message 5");
+            }
+        }
+
+        @Test
+        public void should_insert_skewed_messages_in_parallel_batches() throws Exception {
+            StartupProperties startupProperties = new StartupProperties();
+            startupProperties.setInboxes(4);
+            startupProperties.setMessagesPerInbox(2500);
+            startupProperties.setContentLength(100);
+            startupProperties.setSkew(1);
+            startupProperties.setBatchSize(128);
+            startupProperties.setParallelism(4);
+
+            InboxService inboxService = new InboxService();
+            MessageService messageService = new MessageService();
+            new Startup(inboxService, messageService, startupProperties).run();
+
+            long[] counts = inboxService.findAll(of(0, 10)).stream()
+                .mapToLong(i -> messageService.findAll(i.getId(), of(0, 1)).getTotalElements()).toArray();
+            assertThat(stream(counts).sum()).isEqualTo(10000);
+            assertThat(counts).containsExactly(stream(Startup.distribute(10000, 4, 1)).asLongStream().toArray());
+            assertThat(counts[0]).isGreaterThan(counts[3]);
+
+            Message message = messageService.findAll(1L, of(0, 1)).getContent().get(0);
+            assertThat(message.getContent()).hasSize(message.getContent().indexOf(' ') + 1 + 100);
+        }
+
+        @Test
+        public void should_skip_if_inboxes_are_available() throws Exception {
+            InboxService inboxService = new InboxService();
+            inboxService.insert(new InboxInput("name", "description"));
+            new Startup(inboxService, new MessageService(), new StartupProperties()).run();
+
+            assertThat(inboxService.findAll(of(0, 10)).getTotalElements()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    class Distribute {
+
+        @Test
+        public void should_distribute_evenly_without_skew() {
+            assertThat(Startup.distribute(10, 3, 0)).containsExactly(4, 3, 3);
+        }
+
+        @Test
+        public void should_distribute_by_zipf_weights_with_skew() {
+            assertThat(Startup.distribute(110, 3, 1)).containsExactly(60, 30, 20);
+        }
+    }
+
+}
@@ -22,12 +22,18 @@ package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PARAM_NAME;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PARAM_SIZE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PATH_DELETE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PATH_FIND_ALL;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PATH_FIND_ONE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxController.PATH_UPDATE;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.commons.lang3.RandomUtils.nextLong;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -35,18 +41,30 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.List;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.HateoasConfiguration;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.MetricsConfiguration;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -58,6 +76,8 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
@@ -65,7 +85,7 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 @ExtendWith(SpringExtension.class)
-@Import({ HateoasConfiguration.class, InboxModelHateoasConfiguration.class })
+@Import({ HateoasConfiguration.class, InboxModelHateoasConfiguration.class, MetricsConfiguration.class })
 @WebMvcTest(InboxController.class)
 public class InboxControllerTest {
 
@@ -92,13 +112,31 @@ public class InboxControllerTest {
             List<Inbox> inboxes = newArrayList(inbox(1L), inbox(2L), inbox(3L));
             Page<Inbox> page =
                 new PageImpl<>(inboxes.subList((int) pageable.getOffset(), pageable.getPageSize()), pageable, inboxes.size());
-            given(inboxService.findAll(pageable)).willReturn(page);
+            given(inboxService.findAll(null, pageable)).willReturn(page);
 
             ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(header().string(ETAG, EntityTags.of(page)));
+            actions.andExpect(header().string(VARY, ACCEPT));
 
-            verify(inboxService, times(1)).findAll(pageable);
+            verify(inboxService, times(1)).findAll(null, pageable);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_not_modified_if_etag_matches() throws Exception {
+            Pageable pageable = of(0, 2);
+            Page<Inbox> page = new PageImpl<>(newArrayList(inbox(1L), inbox(2L)), pageable, 3);
+            given(inboxService.findAll(null, pageable)).willReturn(page);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable))
+                .header(IF_NONE_MATCH, EntityTags.of(page)).accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(VARY, ACCEPT));
+            actions.andExpect(content().string(""));
+
+            verify(inboxService, times(1)).findAll(null, pageable);
             verifyNoMoreInteractions(inboxService);
         }
 
@@ -106,17 +144,79 @@ public class InboxControllerTest {
         public void should_return_ok_without_resources_if_none_available() throws Exception {
             Pageable pageable = of(0, 2);
             Page<Inbox> page = new PageImpl<>(newArrayList(), pageable, 0);
-            given(inboxService.findAll(pageable)).willReturn(page);
+            given(inboxService.findAll(null, pageable)).willReturn(page);
 
             ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
 
-            verify(inboxService, times(1)).findAll(pageable);
+            verify(inboxService, times(1)).findAll(null, pageable);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_carry_filter_and_sort_through_the_paging_links() throws Exception {
+            Pageable pageable = of(0, 1, Sort.by(DESC, "id"));
+            Page<Inbox> page = new PageImpl<>(newArrayList(inbox(3L)), pageable, 2);
+            given(inboxService.findAll("work", pageable)).willReturn(page);
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_NAME, "work").params(pageableParams(pageable))
+                .param("sort", "id,desc").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(jsonPath("$._links.self.href", containsString(PARAM_NAME + "=work")));
+            actions.andExpect(jsonPath("$._links.next.href", containsString(PARAM_NAME + "=work")));
+            actions.andExpect(jsonPath("$._links.next.href", containsString("sort=id,desc")));
+
+            verify(inboxService, times(1)).findAll("work", pageable);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_bad_request_if_sort_is_not_supported() throws Exception {
+            Pageable pageable = of(0, 1, Sort.by("description"));
+            given(inboxService.findAll(null, pageable)).willThrow(IllegalArgumentException.class);
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_FIND_ALL).params(pageableParams(pageable)).param("sort", "description").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verify(inboxService, times(1)).findAll(null, pageable);
             verifyNoMoreInteractions(inboxService);
         }
     }
 
+    @Nested
+    class FindAllAfter {
+
+        @AfterEach
+        public void afterEach() {
+            reset(inboxService);
+        }
+
+        @Test
+        public void should_return_ok_including_next_link_if_more_available() throws Exception {
+            Inbox inbox = inbox(1L);
+            given(inboxService.findAllAfter(null, 1)).willReturn(new SliceImpl<>(newArrayList(inbox), of(0, 1), true));
+
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "").param(PARAM_SIZE, "1").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(jsonPath("$._links.next.href", containsString(PARAM_AFTER + "=" + encode(inbox.getId()))));
+
+            verify(inboxService, times(1)).findAllAfter(null, 1);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_bad_request_if_cursor_is_not_legal() throws Exception {
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL).param(PARAM_AFTER, "!!").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(inboxService);
+        }
+    }
+
     @Nested
     class FindOne {
 
@@ -133,6 +233,27 @@ public class InboxControllerTest {
             ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, inbox.getId()).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(jsonPath("$._templates.default.method").value("put"));
+            actions.andExpect(jsonPath("$._templates.delete.method").value("delete"));
+
+            actions.andExpect(header().string(ETAG, EntityTags.of(inbox)));
+
+            actions.andExpect(header().string(VARY, ACCEPT));
+
+            verify(inboxService, times(1)).findOne(inbox.getId());
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_not_modified_if_etag_matches() throws Exception {
+            Inbox inbox = inbox(1L);
+            given(inboxService.findOne(inbox.getId())).willReturn(of(inbox));
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_FIND_ONE, inbox.getId()).header(IF_NONE_MATCH, EntityTags.of(inbox)).accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(VARY, ACCEPT));
+            actions.andExpect(content().string(""));
 
             verify(inboxService, times(1)).findOne(inbox.getId());
             verifyNoMoreInteractions(inboxService);
@@ -162,7 +283,7 @@ public class InboxControllerTest {
         @Test
         public void should_return_created_if_input_is_legal() throws Exception {
             InboxInput inboxInput = inboxInput();
-            Inbox inbox = new Inbox(1L, inboxInput.getName(), inboxInput.getDescription());
+            Inbox inbox = new Inbox(1L, inboxInput.getName(), inboxInput.getDescription(), 0L);
             given(inboxService.insert(inboxInput)).willReturn(inbox);
 
             ResultActions actions = mockMvc.perform(post(PATH_INSERT).accept(HAL_FORMS_JSON).contentType(APPLICATION_JSON)
@@ -194,7 +315,43 @@ public class InboxControllerTest {
             reset(inboxService);
         }
 
-        // FIXME
+        @Test
+        public void should_return_ok_including_etag_if_version_matches() throws Exception {
+            InboxInput inboxInput = inboxInput();
+            Inbox inbox = new Inbox(1L, inboxInput.getName(), inboxInput.getDescription(), 3L);
+            given(inboxService.update(inbox.getId(), 2L, inboxInput)).willReturn(of(inbox));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, inbox.getId()).header(IF_MATCH, "\"1.2\"")
+                .accept(HAL_FORMS_JSON).contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(inboxInput)));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(ETAG, EntityTags.of(inbox)));
+            actions.andExpect(header().string(VARY, ACCEPT));
+
+            verify(inboxService, times(1)).update(inbox.getId(), 2L, inboxInput);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            InboxInput inboxInput = inboxInput();
+            given(inboxService.update(1L, 2L, inboxInput)).willThrow(new VersionConflictException(1L, 2L, 3L));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, 1L).header(IF_MATCH, "\"1.2\"").accept(HAL_FORMS_JSON)
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(inboxInput)));
+
+            actions.andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        public void should_return_precondition_failed_if_etag_denotes_other_inbox() throws Exception {
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, 1L).header(IF_MATCH, "\"2.0\"").accept(HAL_FORMS_JSON)
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(inboxInput())));
+
+            actions.andExpect(status().isPreconditionFailed());
+
+            verifyNoInteractions(inboxService);
+        }
     }
 
     @Nested
@@ -208,30 +365,42 @@ public class InboxControllerTest {
         @Test
         public void should_return_ok_if_known() throws Exception {
             Long id = nextLong();
-            given(inboxService.delete(id)).willReturn(true);
+            given(inboxService.delete(id, null)).willReturn(true);
 
             ResultActions actions = mockMvc.perform(delete(PATH_DELETE, id));
             actions.andExpect(status().isOk());
 
-            verify(inboxService, times(1)).delete(id);
+            verify(inboxService, times(1)).delete(id, null);
+            verifyNoMoreInteractions(inboxService);
+        }
+
+        @Test
+        public void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            Long id = nextLong();
+            given(inboxService.delete(id, 2L)).willThrow(new VersionConflictException(id, 2L, 3L));
+
+            ResultActions actions = mockMvc.perform(delete(PATH_DELETE, id).header(IF_MATCH, "\"" + id + ".2\""));
+            actions.andExpect(status().isPreconditionFailed());
+
+            verify(inboxService, times(1)).delete(id, 2L);
             verifyNoMoreInteractions(inboxService);
         }
 
         @Test
         public void should_return_not_found_if_not_known() throws Exception {
             Long id = nextLong();
-            given(inboxService.delete(id)).willReturn(false);
+            given(inboxService.delete(id, null)).willReturn(false);
 
             ResultActions actions = mockMvc.perform(delete(PATH_DELETE, id));
             actions.andExpect(status().isNotFound());
 
-            verify(inboxService, times(1)).delete(id);
+            verify(inboxService, times(1)).delete(id, null);
             verifyNoMoreInteractions(inboxService);
         }
     }
 
     private static Inbox inbox(Long id) {
-        return new Inbox(id, "name", "description");
+        return new Inbox(id, "name", "description", 0L);
     }
 
     private static InboxInput inboxInput() {
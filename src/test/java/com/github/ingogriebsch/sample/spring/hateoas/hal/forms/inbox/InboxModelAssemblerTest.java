@@ -19,23 +19,29 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.hateoas.IanaLinkRelations.NEXT;
 import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
 
 import java.util.List;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.StreamingPagedModel;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Affordance;
 import org.springframework.hateoas.AffordanceModel;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 
@@ -147,6 +153,66 @@ public class InboxModelAssemblerTest {
         }
     }
 
+    @Nested
+    class ToStreamingModel {
+
+        @Test
+        public void should_throw_exception_if_input_is_null() {
+            InboxModelAssembler assembler = inboxModelAssembler();
+            assertThrows(NullPointerException.class, () -> assembler.toStreamingModel(null));
+        }
+
+        @Test
+        public void should_return_model_carrying_links_and_metadata_of_paged_model() {
+            InboxModelAssembler assembler = inboxModelAssembler();
+            InboxProjection inbox = new InboxProjection(1L, "name", "description");
+            Page<InboxProjection> page = new PageImpl<>(newArrayList(inbox), of(1, 1), 3);
+
+            StreamingPagedModel<InboxProjection, InboxModel> model = assembler.toStreamingModel(page);
+            PagedModel<InboxModel> pagedModel = assembler.toPagedModel(page);
+
+            assertThat(model.getLinks()).isEqualTo(pagedModel.getLinks());
+            assertThat(model.getMetadata()).isEqualTo(pagedModel.getMetadata());
+        }
+
+        @Test
+        public void should_return_model_assembling_content_on_iteration() {
+            InboxModelAssembler assembler = inboxModelAssembler();
+            InboxProjection inbox = new InboxProjection(1L, "name", "description");
+            Page<InboxProjection> page = new PageImpl<>(newArrayList(inbox), of(0, 5), 1);
+
+            StreamingPagedModel<InboxProjection, InboxModel> model = assembler.toStreamingModel(page);
+            assertThat(model.hasContent()).isTrue();
+            assertThat(model.iterator()).toIterable().containsExactly(assembler.toModel(inbox));
+        }
+    }
+
+    @Nested
+    class ToCursorModel {
+
+        @Test
+        public void should_return_model_containing_self_and_next_link_if_more_available() {
+            InboxModelAssembler assembler = inboxModelAssembler();
+            InboxProjection inbox = new InboxProjection(1L, "name", "description");
+            Slice<InboxProjection> slice = new SliceImpl<>(newArrayList(inbox), of(0, 1), true);
+
+            CollectionModel<InboxModel> model = assembler.toCursorModel(slice, "");
+            assertThat(model.getContent()).hasSize(1);
+            assertThat(model.getLink(SELF)).isPresent();
+            assertThat(model.getLink(NEXT).map(Link::getHref))
+                .hasValueSatisfying(href -> assertThat(href).endsWith("/api/inboxes?after=" + encode(inbox.getId()) + "&size=1"));
+        }
+
+        @Test
+        public void should_return_model_without_next_link_if_no_more_available() {
+            InboxModelAssembler assembler = inboxModelAssembler();
+            InboxProjection inbox = new InboxProjection(1L, "name", "description");
+            Slice<InboxProjection> slice = new SliceImpl<>(newArrayList(inbox), of(0, 1), false);
+
+            assertThat(assembler.toCursorModel(slice, "").getLink(NEXT)).isEmpty();
+        }
+    }
+
     private static InboxModelAssembler inboxModelAssembler() {
         return new InboxModelAssembler(new PagedResourcesAssembler<InboxProjection>(null, null),
             new HateoasPageableHandlerMethodArgumentResolver());
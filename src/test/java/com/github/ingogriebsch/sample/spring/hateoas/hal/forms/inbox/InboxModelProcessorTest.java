@@ -24,6 +24,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
@@ -59,6 +61,7 @@ public class InboxModelProcessorTest {
     }
 
     private static InboxModelProcessor inboxProcessor() {
-        return new InboxModelProcessor(new HateoasPageableHandlerMethodArgumentResolver());
+        return new InboxModelProcessor(new HateoasPageableHandlerMethodArgumentResolver(),
+            new PipelineMetrics(new SimpleMeterRegistry()));
     }
 }
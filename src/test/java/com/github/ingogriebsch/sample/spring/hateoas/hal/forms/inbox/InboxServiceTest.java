@@ -21,21 +21,32 @@ package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox;
 
 import static java.util.stream.Collectors.toList;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService.SORT_ID;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService.SORT_NAME;
 import static org.apache.commons.lang3.RandomUtils.nextInt;
 import static org.apache.commons.lang3.RandomUtils.nextLong;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.newArrayList;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.InMemoryStorage;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.MappedLogStorage;
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 public class InboxServiceTest {
 
@@ -56,6 +67,74 @@ public class InboxServiceTest {
                 .containsExactlyElementsOf(inboxInputs.subList((int) pageable.getOffset(), pageable.getPageSize()).stream()
                     .map(pi -> new Tuple(pi.getName(), pi.getDescription())).collect(toList()));
         }
+
+        @Test
+        public void should_not_return_deleted_inboxes() throws Exception {
+            InboxService inboxService = new InboxService();
+            List<Inbox> inboxes = newArrayList(inboxInput(), inboxInput(), inboxInput()).stream().map(p -> inboxService.insert(p))
+                .collect(toList());
+            inboxService.delete(inboxes.get(1).getId());
+
+            Page<Inbox> page = inboxService.findAll(of(0, 5));
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(page.getContent()).containsExactly(inboxes.get(0), inboxes.get(2));
+        }
+
+        @Test
+        public void should_return_page_sorted_by_name() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox work = inboxService.insert(new InboxInput("work", null));
+            Inbox archive = inboxService.insert(new InboxInput("archive", null));
+            Inbox travel = inboxService.insert(new InboxInput("travel", null));
+            inboxService.update(archive.getId(), new InboxInput("zoo", null));
+
+            assertThat(inboxService.findAll(of(0, 2, Sort.by(SORT_NAME))).getContent()).extracting("id")
+                .containsExactly(travel.getId(), work.getId());
+            assertThat(inboxService.findAll(of(0, 2, Sort.by(DESC, SORT_NAME))).getContent()).extracting("id")
+                .containsExactly(archive.getId(), work.getId());
+            assertThat(inboxService.findAll(of(0, 2, Sort.by(DESC, SORT_ID))).getContent()).extracting("id")
+                .containsExactly(travel.getId(), archive.getId());
+        }
+
+        @Test
+        public void should_return_page_filtered_by_name() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox first = inboxService.insert(new InboxInput("work", null));
+            inboxService.insert(new InboxInput("travel", null));
+            Inbox second = inboxService.insert(new InboxInput("work", null));
+            Inbox deleted = inboxService.insert(new InboxInput("work", null));
+            inboxService.delete(deleted.getId());
+
+            Page<Inbox> page = inboxService.findAll("work", of(0, 1, Sort.by(DESC, SORT_ID)));
+            assertThat(page.getContent()).containsExactly(second);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(inboxService.findAll("work", of(1, 1)).getContent()).containsExactly(second);
+            assertThat(inboxService.findAll("work", of(0, 1)).getContent()).containsExactly(first);
+        }
+
+        @Test
+        public void should_throw_exception_if_sort_is_not_supported() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new InboxService().findAll(of(0, 2, Sort.by("description"))));
+        }
+    }
+
+    @Nested
+    class FindAllAfter {
+
+        @Test
+        public void should_return_slice_following_the_given_id() throws Exception {
+            InboxService inboxService = new InboxService();
+            List<Inbox> inboxes = newArrayList(inboxInput(), inboxInput(), inboxInput(), inboxInput()).stream()
+                .map(p -> inboxService.insert(p)).collect(toList());
+
+            Slice<Inbox> slice = inboxService.findAllAfter(null, 2);
+            assertThat(slice.getContent()).containsExactly(inboxes.get(0), inboxes.get(1));
+            assertThat(slice.hasNext()).isTrue();
+
+            slice = inboxService.findAllAfter(inboxes.get(1).getId(), 2);
+            assertThat(slice.getContent()).containsExactly(inboxes.get(2), inboxes.get(3));
+            assertThat(slice.hasNext()).isFalse();
+        }
     }
 
     @Nested
@@ -107,6 +186,24 @@ public class InboxServiceTest {
             assertThat(inbox).isEqualToComparingOnlyGivenFields(inboxInput, "name", "description");
         }
 
+        @Test
+        public void should_not_publish_inbox_before_it_is_committed() throws Exception {
+            AtomicReference<InboxService> inboxService = new AtomicReference<>();
+            List<Boolean> visibleOnCommit = newArrayList();
+            inboxService.set(new InboxService(new InMemoryStorage() {
+
+                @Override
+                public void sync(long position) {
+                    visibleOnCommit.add(inboxService.get().findOne(1L).isPresent());
+                }
+            }, event -> {
+            }));
+
+            Inbox inbox = inboxService.get().insert(inboxInput());
+            assertThat(visibleOnCommit).containsExactly(false);
+            assertThat(inboxService.get().findOne(inbox.getId())).isPresent();
+        }
+
     }
 
     @Nested
@@ -136,6 +233,39 @@ public class InboxServiceTest {
             assertThat(optional.get()).isEqualToComparingOnlyGivenFields(inboxInput, "name", "description");
         }
 
+        @Test
+        public void should_increment_version_of_updated_inbox() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox inbox = inboxService.insert(inboxInput());
+            assertThat(inbox.getVersion()).isEqualTo(0);
+
+            inboxService.update(inbox.getId(), inboxInput());
+            inboxService.update(inbox.getId(), inboxInput());
+
+            assertThat(inboxService.findOne(inbox.getId())).hasValueSatisfying(i -> assertThat(i.getVersion()).isEqualTo(2));
+        }
+
+        @Test
+        public void should_throw_exception_if_expected_version_does_not_match() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox inbox = inboxService.insert(inboxInput());
+            inboxService.update(inbox.getId(), 0L, inboxInput());
+
+            assertThrows(VersionConflictException.class, () -> inboxService.update(inbox.getId(), 0L, inboxInput()));
+            assertThat(inboxService.findOne(inbox.getId())).hasValueSatisfying(i -> assertThat(i.getVersion()).isEqualTo(1));
+        }
+
+        @Test
+        public void should_not_modify_previously_returned_instance() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox inbox = inboxService.insert(inboxInput());
+
+            inboxService.update(inbox.getId(), new InboxInput("other", "other"));
+
+            assertThat(inbox.getName()).isEqualTo("name");
+            assertThat(inbox.getVersion()).isEqualTo(0);
+        }
+
         @Test
         public void should_return_empty_optional_if_inbox_is_not_known() throws Exception {
             InboxService inboxService = new InboxService();
@@ -161,6 +291,28 @@ public class InboxServiceTest {
             assertThat(inboxService.delete(nextLong())).isFalse();
         }
 
+        @Test
+        public void should_throw_exception_and_keep_inbox_if_expected_version_does_not_match() throws Exception {
+            InboxService inboxService = new InboxService();
+            Inbox inbox = inboxService.insert(inboxInput());
+
+            assertThrows(VersionConflictException.class, () -> inboxService.delete(inbox.getId(), 1L));
+            assertThat(inboxService.findOne(inbox.getId())).isPresent();
+        }
+
+        @Test
+        public void should_publish_event_if_inbox_was_deleted() throws Exception {
+            List<Object> events = newArrayList();
+            InboxService inboxService = new InboxService(events::add);
+            Inbox inbox = inboxService.insert(inboxInput());
+
+            assertThat(inboxService.delete(nextLong())).isFalse();
+            assertThat(events).isEmpty();
+
+            assertThat(inboxService.delete(inbox.getId())).isTrue();
+            assertThat(events).containsExactly(new InboxDeletedEvent(inbox.getId()));
+        }
+
         @Test
         public void should_return_true_if_inbox_is_known() throws Exception {
             InboxService inboxService = new InboxService();
@@ -177,6 +329,59 @@ public class InboxServiceTest {
 
     }
 
+    @Nested
+    class Recover {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        public void should_restore_inboxes_and_continue_ids_from_storage() throws Exception {
+            Inbox updated;
+            Inbox deleted;
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                InboxService inboxService = new InboxService(storage, event -> {
+                });
+                Inbox inbox = inboxService.insert(inboxInput());
+                updated = inboxService.update(inbox.getId(), new InboxInput("other", "other")).get();
+                deleted = inboxService.insert(inboxInput());
+                inboxService.delete(deleted.getId());
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                InboxService inboxService = new InboxService(storage, event -> {
+                });
+
+                assertThat(inboxService.findAll(of(0, 10)).getContent()).containsExactly(updated);
+                assertThat(inboxService.insert(inboxInput()).getId()).isGreaterThan(deleted.getId());
+            }
+        }
+
+        @Test
+        public void should_restore_inboxes_from_checkpoint_and_log_tail() throws Exception {
+            Inbox checkpointed;
+            Inbox appended;
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                InboxService inboxService = new InboxService(storage, event -> {
+                });
+                checkpointed = inboxService.insert(inboxInput());
+                Inbox deleted = inboxService.insert(inboxInput());
+                storage.checkpoint(newArrayList(inboxService));
+
+                inboxService.delete(deleted.getId());
+                appended = inboxService.insert(new InboxInput("appended", "appended"));
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                InboxService inboxService = new InboxService(storage, event -> {
+                });
+
+                assertThat(inboxService.findAll(of(0, 10)).getContent()).containsExactly(checkpointed, appended);
+                assertThat(inboxService.insert(inboxInput()).getId()).isGreaterThan(appended.getId());
+            }
+        }
+    }
+
     private static InboxInput inboxInput() {
         return new InboxInput("name", "description");
     }
@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.LongStream.rangeClosed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.IndexedStore;
+import org.junit.jupiter.api.Test;
+
+public class MessageColumnLayoutTest {
+
+    @Test
+    public void should_throw_exception_if_message_is_not_off_heap() {
+        IndexedStore<Message> store = new IndexedStore<>(MessageColumnLayout.INSTANCE);
+        assertThrows(IllegalArgumentException.class, () -> store.put(1L, new Message(1L, "title", "content", 0L)));
+    }
+
+    @Test
+    public void should_return_equal_messages_after_storing_them_in_columns() {
+        MessageContentStore contentStore = new MessageContentStore();
+        IndexedStore<Message> store = new IndexedStore<>(MessageColumnLayout.INSTANCE);
+        List<Message> messages =
+            rangeClosed(1, 1000).mapToObj(id -> new Message(id, "title " + id, "content " + id, id % 3)).collect(toList());
+
+        store.putAll(messages.stream()
+            .map(m -> contentStore.store(new Message(m.getId(), m.getTitle(), m.getContent(), m.getVersion()))).collect(toList()),
+            Message::getId);
+        store.update(500L, m -> contentStore.store(new Message(m.getId(), "updated", m.getContent(), m.getVersion() + 1)));
+        store.remove(1000L);
+
+        messages.set(499, new Message(500L, "updated", "content 500", messages.get(499).getVersion() + 1));
+        messages.remove(999);
+        assertThat(store.values()).containsExactlyElementsOf(messages);
+    }
+
+}
@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class MessageContentStoreTest {
+
+    @Nested
+    class Store {
+
+        @Test
+        public void should_throw_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class, () -> new MessageContentStore().store(null));
+        }
+
+        @Test
+        public void should_keep_title_and_content_readable() {
+            Message message = new MessageContentStore().store(new Message(1L, "Grüße", "ünïcödé ✓", 2L));
+
+            assertThat(message.isOffHeap()).isTrue();
+            assertThat(message.getTitle()).isEqualTo("Grüße");
+            assertThat(message.getContent()).isEqualTo("ünïcödé ✓");
+            assertThat(message).isEqualTo(new Message(1L, "Grüße", "ünïcödé ✓", 2L));
+        }
+
+        @Test
+        public void should_keep_null_values() {
+            Message message = new MessageContentStore().store(new Message(1L, null, null, 0L));
+
+            assertThat(message.getTitle()).isNull();
+            assertThat(message.getContent()).isNull();
+        }
+
+        @Test
+        public void should_open_new_slab_if_content_does_not_fit() {
+            MessageContentStore contentStore = new MessageContentStore(64);
+            String large = randomAlphanumeric(1000);
+
+            Message first = contentStore.store(new Message(1L, "a", "b", 0L));
+            Message second = contentStore.store(new Message(2L, "c", large, 0L));
+            Message third = contentStore.store(new Message(3L, "d", "e", 0L));
+
+            assertThat(first.getContent()).isEqualTo("b");
+            assertThat(second.getContent()).isEqualTo(large);
+            assertThat(third.getTitle()).isEqualTo("d");
+        }
+
+        @Test
+        public void should_grow_slabs_up_to_the_slab_size() {
+            MessageContentStore contentStore = new MessageContentStore();
+            String large = randomAlphanumeric(100_000);
+
+            List<ContentSlab> slabs = range(0, 200).mapToObj(i -> contentStore.store(new Message((long) i, "title", large, 0L)))
+                .map(Message::slab).distinct().collect(toList());
+
+            assertThat(slabs.get(0).capacity()).isLessThan(MessageContentStore.SLAB_SIZE);
+            assertThat(slabs.get(slabs.size() - 1).capacity()).isEqualTo(MessageContentStore.SLAB_SIZE);
+        }
+
+        @Test
+        public void should_move_message_back_to_heap_if_modified() {
+            Message message = new MessageContentStore().store(new Message(1L, "title", "content", 0L));
+            message.setTitle("other");
+
+            assertThat(message.isOffHeap()).isFalse();
+            assertThat(message.getTitle()).isEqualTo("other");
+            assertThat(message.getContent()).isEqualTo("content");
+        }
+    }
+
+    @Nested
+    class Release {
+
+        @Test
+        public void should_offer_retired_slab_once_it_turns_sparse() {
+            MessageContentStore contentStore = new MessageContentStore(256);
+            List<Message> messages =
+                range(0, 16).mapToObj(i -> contentStore.store(new Message((long) i, "title", "content", 0L))).collect(toList());
+            messages.forEach(contentStore::retain);
+
+            ContentSlab slab = messages.get(0).slab();
+            assertThat(messages.get(15).slab()).isNotSameAs(slab);
+            assertThat(contentStore.pollSparse()).isNull();
+
+            messages.stream().filter(m -> m.slab() == slab).skip(1).forEach(contentStore::release);
+            assertThat(contentStore.pollSparse()).isSameAs(slab);
+            assertThat(contentStore.pollSparse()).isNull();
+        }
+
+        @Test
+        public void should_not_offer_slab_which_is_still_filled() {
+            MessageContentStore contentStore = new MessageContentStore(256);
+            Message message = contentStore.store(new Message(1L, "title", "content", 0L));
+            contentStore.retain(message);
+
+            contentStore.release(message);
+
+            assertThat(contentStore.pollSparse()).isNull();
+        }
+
+        @Test
+        public void should_let_the_records_of_a_slab_be_traced_back_to_their_messages() {
+            MessageContentStore contentStore = new MessageContentStore();
+            Message first = contentStore.store(new Message(3L, "title", "content", 0L));
+            Message second = contentStore.store(new Message(4L, null, null, 0L));
+
+            List<String> records = newArrayList();
+            first.slab().forEach((id, offset) -> records.add(id + ":" + offset));
+
+            assertThat(records).containsExactly("3:" + first.offset(), "4:" + second.offset());
+        }
+    }
+
+}
@@ -21,13 +21,33 @@ package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
-
+import static java.util.stream.Collectors.joining;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.APPLICATION_NDJSON_VALUE;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.MAX_BATCH_BYTES;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.MAX_BATCH_SIZE;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.MAX_SIZE;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PARAM_AFTER;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PARAM_IDS;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PARAM_QUERY;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PARAM_SIZE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_DELETE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_FIND_ALL;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_FIND_ONE;
 import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_INSERT;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_INSERT_ALL;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_SEARCH;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageController.PATH_UPDATE;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.ServerTimingFilter.HEADER_OPT_IN;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.ServerTimingFilter.HEADER_SERVER_TIMING;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.commons.lang3.RandomUtils.nextLong;
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -36,18 +56,35 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.data.domain.PageRequest.of;
 import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.EntityTags;
 import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.HateoasConfiguration;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.Inbox;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxNotFoundException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxService;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.MetricsConfiguration;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -58,6 +95,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
@@ -65,7 +103,7 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 @ExtendWith(SpringExtension.class)
-@Import({ HateoasConfiguration.class, MessageModelHateoasConfiguration.class })
+@Import({ HateoasConfiguration.class, MessageModelHateoasConfiguration.class, MetricsConfiguration.class })
 @WebMvcTest(MessageController.class)
 public class MessageControllerTest {
 
@@ -78,6 +116,9 @@ public class MessageControllerTest {
     @MockBean
     private MessageService messageService;
 
+    @MockBean
+    private InboxService inboxService;
+
     @Nested
     class FindAll {
 
@@ -93,14 +134,14 @@ public class MessageControllerTest {
             List<Message> messages = newArrayList(inbox(1L), inbox(2L), inbox(3L));
             Page<Message> page =
                 new PageImpl<>(messages.subList((int) pageable.getOffset(), pageable.getPageSize()), pageable, messages.size());
-            given(messageService.findAll(inboxId, pageable)).willReturn(page);
+            given(messageService.findAll(inboxId, null, pageable)).willReturn(page);
 
             ResultActions actions =
                 mockMvc.perform(get(PATH_FIND_ALL, inboxId).params(pageableParams(pageable)).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
 
-            verify(messageService, times(1)).findAll(inboxId, pageable);
+            verify(messageService, times(1)).findAll(inboxId, null, pageable);
             verifyNoMoreInteractions(messageService);
         }
 
@@ -108,16 +149,136 @@ public class MessageControllerTest {
         public void should_return_ok_without_resources_if_none_available() throws Exception {
             Long inboxId = 1L;
             Pageable pageable = of(0, 2);
-            given(messageService.findAll(inboxId, pageable)).willReturn(new PageImpl<>(newArrayList(), pageable, 0));
+            given(messageService.findAll(inboxId, null, pageable)).willReturn(new PageImpl<>(newArrayList(), pageable, 0));
 
             ResultActions actions =
                 mockMvc.perform(get(PATH_FIND_ALL, inboxId).params(pageableParams(pageable)).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
 
-            verify(messageService, times(1)).findAll(inboxId, pageable);
+            verify(messageService, times(1)).findAll(inboxId, null, pageable);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_server_timing_header_with_streamed_stages_if_requested() throws Exception {
+            Long inboxId = 1L;
+            Pageable pageable = of(0, 2);
+            given(messageService.findAll(inboxId, null, pageable))
+                .willReturn(new PageImpl<>(newArrayList(inbox(1L), inbox(2L)), pageable, 2));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL, inboxId).params(pageableParams(pageable))
+                .header(HEADER_OPT_IN, "true").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(HEADER_SERVER_TIMING, matchesPattern(
+                "lookup;dur=[\\d.]+, conversion;dur=[\\d.]+, assembly;dur=[\\d.]+, processing;dur=[\\d.]+, serialization;dur=[\\d.]+, total;dur=[\\d.]+")));
+        }
+    }
+
+    @Nested
+    class FindAllAfter {
+
+        @AfterEach
+        public void afterEach() {
+            reset(messageService);
+        }
+
+        @Test
+        public void should_return_ok_including_next_link_if_more_available() throws Exception {
+            Long inboxId = 1L;
+            Message message = inbox(2L);
+            given(messageService.findAllAfter(inboxId, 1L, 1)).willReturn(new SliceImpl<>(newArrayList(message), of(0, 1), true));
+
+            ResultActions actions = mockMvc.perform(
+                get(PATH_FIND_ALL, inboxId).param(PARAM_AFTER, encode(1L)).param(PARAM_SIZE, "1").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(jsonPath("$._links.next.href", containsString(PARAM_AFTER + "=" + encode(message.getId()))));
+
+            verify(messageService, times(1)).findAllAfter(inboxId, 1L, 1);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_bad_request_if_size_is_not_legal() throws Exception {
+            ResultActions actions =
+                mockMvc.perform(get(PATH_FIND_ALL, 1L).param(PARAM_AFTER, "").param(PARAM_SIZE, "0").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(messageService);
+        }
+    }
+
+    @Nested
+    class FindAllById {
+
+        @AfterEach
+        public void afterEach() {
+            reset(messageService);
+        }
+
+        @Test
+        public void should_return_ok_including_requested_resources() throws Exception {
+            Long inboxId = 1L;
+            given(messageService.findAllById(inboxId, newArrayList(1L, 3L))).willReturn(newArrayList(inbox(1L), inbox(3L)));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL, inboxId).param(PARAM_IDS, "1,3").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(jsonPath("$._embedded.messageModelList[*].id").value(contains(1, 3)));
+            actions.andExpect(jsonPath("$._embedded.messageModelList[0]._templates").doesNotExist());
+            actions.andExpect(jsonPath("$._links.self.href", containsString(PARAM_IDS + "=1,3")));
+            actions.andExpect(jsonPath("$._templates.default.method").value("post"));
+
+            verify(messageService, times(1)).findAllById(inboxId, newArrayList(1L, 3L));
             verifyNoMoreInteractions(messageService);
         }
+
+        @Test
+        public void should_return_bad_request_if_too_many_ids_are_requested() throws Exception {
+            String ids = LongStream.rangeClosed(1, MAX_SIZE + 1).mapToObj(Long::toString).collect(joining(","));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ALL, 1L).param(PARAM_IDS, ids).accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(messageService);
+        }
+    }
+
+    @Nested
+    class Search {
+
+        @AfterEach
+        public void afterEach() {
+            reset(messageService);
+        }
+
+        @Test
+        public void should_return_ok_including_ranked_resources_and_links() throws Exception {
+            Long inboxId = 1L;
+            Pageable pageable = of(0, 2);
+            Page<Message> page = new PageImpl<>(newArrayList(inbox(3L), inbox(1L)), pageable, 3);
+            given(messageService.search(inboxId, "weekly report", pageable)).willReturn(page);
+
+            ResultActions actions = mockMvc.perform(get(PATH_SEARCH, inboxId).param(PARAM_QUERY, "weekly report")
+                .params(pageableParams(pageable)).accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(jsonPath("$._embedded.messageModelList[*].id").value(contains(3, 1)));
+            actions.andExpect(jsonPath("$._links.self.href", containsString(PARAM_QUERY + "=weekly%20report")));
+            actions.andExpect(jsonPath("$._links.next.href", containsString(PARAM_QUERY + "=weekly%20report")));
+
+            verify(messageService, times(1)).search(inboxId, "weekly report", pageable);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_bad_request_if_query_is_blank() throws Exception {
+            ResultActions actions = mockMvc.perform(get(PATH_SEARCH, 1L).param(PARAM_QUERY, " ").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(messageService);
+        }
     }
 
     @Nested
@@ -137,11 +298,43 @@ public class MessageControllerTest {
             ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, inboxId, inbox.getId()).accept(HAL_FORMS_JSON));
             actions.andExpect(status().isOk());
             actions.andExpect(content().contentType(HAL_FORMS_JSON));
+            actions.andExpect(header().string(ETAG, EntityTags.of(inbox)));
+            actions.andExpect(header().string(VARY, ACCEPT));
 
             verify(messageService, times(1)).findOne(inboxId, inbox.getId());
             verifyNoMoreInteractions(messageService);
         }
 
+        @Test
+        public void should_return_server_timing_header_if_requested() throws Exception {
+            Long inboxId = 1L;
+            Message message = inbox(1L);
+            given(messageService.findOne(inboxId, message.getId())).willReturn(of(message));
+
+            ResultActions actions = mockMvc
+                .perform(get(PATH_FIND_ONE, inboxId, message.getId()).header(HEADER_OPT_IN, "true").accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(HEADER_SERVER_TIMING, matchesPattern(
+                "lookup;dur=[\\d.]+, conversion;dur=[\\d.]+, assembly;dur=[\\d.]+, processing;dur=[\\d.]+, serialization;dur=[\\d.]+, total;dur=[\\d.]+")));
+            actions.andExpect(jsonPath("$.id").value(message.getId()));
+        }
+
+        @Test
+        public void should_return_not_modified_if_etag_matches() throws Exception {
+            Long inboxId = 1L;
+            Message message = inbox(1L);
+            given(messageService.findOne(inboxId, message.getId())).willReturn(of(message));
+
+            ResultActions actions = mockMvc.perform(get(PATH_FIND_ONE, inboxId, message.getId())
+                .header(IF_NONE_MATCH, EntityTags.of(message)).accept(HAL_FORMS_JSON));
+            actions.andExpect(status().isNotModified());
+            actions.andExpect(header().string(VARY, ACCEPT));
+            actions.andExpect(content().string(""));
+
+            verify(messageService, times(1)).findOne(inboxId, message.getId());
+            verifyNoMoreInteractions(messageService);
+        }
+
         @Test
         public void should_return_not_found_if_not_available() throws Exception {
             Long inboxId = 1L;
@@ -159,16 +352,21 @@ public class MessageControllerTest {
     @Nested
     class Insert {
 
+        @BeforeEach
+        public void beforeEach() {
+            given(inboxService.findOne(anyLong())).willReturn(of(new Inbox(1L, "name", "description", 0L)));
+        }
+
         @AfterEach
         public void afterEach() {
-            reset(messageService);
+            reset(messageService, inboxService);
         }
 
         @Test
         public void should_return_created_if_input_is_legal() throws Exception {
             Long inboxId = 1L;
             MessageInput inboxInput = inboxInput();
-            Message inbox = new Message(1L, inboxInput.getTitle(), inboxInput.getContent());
+            Message inbox = new Message(1L, inboxInput.getTitle(), inboxInput.getContent(), 0L);
             given(messageService.insert(inboxId, inboxInput)).willReturn(inbox);
 
             ResultActions actions = mockMvc.perform(post(PATH_INSERT, inboxId).accept(HAL_FORMS_JSON)
@@ -181,6 +379,31 @@ public class MessageControllerTest {
             verifyNoMoreInteractions(messageService);
         }
 
+        @Test
+        public void should_return_not_found_if_inbox_was_deleted() throws Exception {
+            Long inboxId = 1L;
+            MessageInput messageInput = inboxInput();
+            given(messageService.insert(inboxId, messageInput)).willThrow(new InboxNotFoundException(inboxId));
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT, inboxId).accept(HAL_FORMS_JSON)
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(messageInput)));
+
+            actions.andExpect(status().isNotFound());
+        }
+
+        @Test
+        public void should_return_not_found_if_inbox_does_not_exist() throws Exception {
+            Long inboxId = 1L;
+            given(inboxService.findOne(inboxId)).willReturn(empty());
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT, inboxId).accept(HAL_FORMS_JSON)
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(inboxInput())));
+
+            actions.andExpect(status().isNotFound());
+
+            verifyNoInteractions(messageService);
+        }
+
         @Test
         public void should_return_bad_request_if_input_is_not_legal() throws Exception {
             Long inboxId = 1L;
@@ -193,6 +416,115 @@ public class MessageControllerTest {
         }
     }
 
+    @Nested
+    class InsertAll {
+
+        @BeforeEach
+        public void beforeEach() {
+            given(inboxService.findOne(anyLong())).willReturn(of(new Inbox(1L, "name", "description", 0L)));
+        }
+
+        @AfterEach
+        public void afterEach() {
+            reset(messageService, inboxService);
+        }
+
+        @Test
+        public void should_return_created_including_ids_if_array_is_legal() throws Exception {
+            Long inboxId = 1L;
+            List<MessageInput> messageInputs = newArrayList(inboxInput(), inboxInput());
+            given(messageService.insertAll(inboxId, messageInputs)).willReturn(newArrayList(inbox(4L), inbox(5L)));
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL, inboxId).contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(messageInputs)));
+
+            actions.andExpect(status().isCreated());
+            actions.andExpect(jsonPath("$.ids").value(contains(4, 5)));
+            actions.andExpect(jsonPath("$.errors").doesNotExist());
+
+            verify(messageService, times(1)).insertAll(inboxId, messageInputs);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_created_including_ids_if_ndjson_is_legal() throws Exception {
+            Long inboxId = 1L;
+            List<MessageInput> messageInputs = newArrayList(inboxInput(), inboxInput());
+            given(messageService.insertAll(inboxId, messageInputs)).willReturn(newArrayList(inbox(4L), inbox(5L)));
+
+            String content = objectMapper.writeValueAsString(inboxInput()) + "\n" + objectMapper.writeValueAsString(inboxInput());
+            ResultActions actions =
+                mockMvc.perform(post(PATH_INSERT_ALL, inboxId).contentType(APPLICATION_NDJSON_VALUE).content(content));
+
+            actions.andExpect(status().isCreated());
+            actions.andExpect(jsonPath("$.ids").value(contains(4, 5)));
+
+            verify(messageService, times(1)).insertAll(inboxId, messageInputs);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_bad_request_including_errors_if_some_input_is_not_legal() throws Exception {
+            List<MessageInput> messageInputs = newArrayList(inboxInput(), new MessageInput("title", ""));
+
+            ResultActions actions = mockMvc.perform(
+                post(PATH_INSERT_ALL, 1L).contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(messageInputs)));
+
+            actions.andExpect(status().isBadRequest());
+            actions.andExpect(jsonPath("$.ids").doesNotExist());
+            actions.andExpect(jsonPath("$.errors.0").doesNotExist());
+            actions.andExpect(jsonPath("$.errors.1[0]").value(containsString("content")));
+
+            verifyNoInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_bad_request_if_input_is_not_readable() throws Exception {
+            ResultActions actions =
+                mockMvc.perform(post(PATH_INSERT_ALL, 1L).contentType(APPLICATION_JSON).content("[{\"title\""));
+
+            actions.andExpect(status().isBadRequest());
+
+            verifyNoInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_not_found_if_inbox_does_not_exist() throws Exception {
+            Long inboxId = 1L;
+            given(inboxService.findOne(inboxId)).willReturn(empty());
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL, inboxId).contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(newArrayList(inboxInput()))));
+
+            actions.andExpect(status().isNotFound());
+
+            verifyNoInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_payload_too_large_if_batch_contains_too_many_items() throws Exception {
+            String content = Stream.generate(() -> "{\"title\":\"t\",\"content\":\"c\"}").limit(MAX_BATCH_SIZE + 1)
+                .collect(joining(",", "[", "]"));
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL, 1L).contentType(APPLICATION_JSON).content(content));
+
+            actions.andExpect(status().isPayloadTooLarge());
+
+            verifyNoInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_payload_too_large_if_batch_contains_too_many_bytes() throws Exception {
+            String content = "[{\"title\":\"t\",\"content\":\"" + repeat('c', MAX_BATCH_BYTES) + "\"}]";
+
+            ResultActions actions = mockMvc.perform(post(PATH_INSERT_ALL, 1L).contentType(APPLICATION_JSON).content(content));
+
+            actions.andExpect(status().isPayloadTooLarge());
+
+            verifyNoInteractions(messageService);
+        }
+    }
+
     @Nested
     class Update {
 
@@ -201,7 +533,34 @@ public class MessageControllerTest {
             reset(messageService);
         }
 
-        // FIXME
+        @Test
+        public void should_return_ok_including_etag_if_version_matches() throws Exception {
+            Long inboxId = 1L;
+            MessageInput messageInput = inboxInput();
+            Message message = new Message(1L, messageInput.getTitle(), messageInput.getContent(), 3L);
+            given(messageService.update(inboxId, message.getId(), 2L, messageInput)).willReturn(of(message));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, inboxId, message.getId()).header(IF_MATCH, "\"1.2\"")
+                .accept(HAL_FORMS_JSON).contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(messageInput)));
+
+            actions.andExpect(status().isOk());
+            actions.andExpect(header().string(ETAG, EntityTags.of(message)));
+            actions.andExpect(header().string(VARY, ACCEPT));
+
+            verify(messageService, times(1)).update(inboxId, message.getId(), 2L, messageInput);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            MessageInput messageInput = inboxInput();
+            given(messageService.update(1L, 1L, 2L, messageInput)).willThrow(new VersionConflictException(1L, 2L, 3L));
+
+            ResultActions actions = mockMvc.perform(put(PATH_UPDATE, 1L, 1L).header(IF_MATCH, "\"1.2\"").accept(HAL_FORMS_JSON)
+                .contentType(APPLICATION_JSON).content(objectMapper.writeValueAsString(messageInput)));
+
+            actions.andExpect(status().isPreconditionFailed());
+        }
     }
 
     @Nested
@@ -216,12 +575,25 @@ public class MessageControllerTest {
         public void should_return_ok_if_known() throws Exception {
             Long inboxId = 1L;
             Long id = nextLong();
-            given(messageService.delete(inboxId, id)).willReturn(true);
+            given(messageService.delete(inboxId, id, null)).willReturn(true);
 
             ResultActions actions = mockMvc.perform(delete(PATH_DELETE, inboxId, id));
             actions.andExpect(status().isOk());
 
-            verify(messageService, times(1)).delete(inboxId, id);
+            verify(messageService, times(1)).delete(inboxId, id, null);
+            verifyNoMoreInteractions(messageService);
+        }
+
+        @Test
+        public void should_return_precondition_failed_if_version_does_not_match() throws Exception {
+            Long inboxId = 1L;
+            Long id = 1L;
+            given(messageService.delete(inboxId, id, 2L)).willThrow(new VersionConflictException(id, 2L, 3L));
+
+            ResultActions actions = mockMvc.perform(delete(PATH_DELETE, inboxId, id).header(IF_MATCH, "\"1.2\""));
+            actions.andExpect(status().isPreconditionFailed());
+
+            verify(messageService, times(1)).delete(inboxId, id, 2L);
             verifyNoMoreInteractions(messageService);
         }
 
@@ -229,18 +601,18 @@ public class MessageControllerTest {
         public void should_return_not_found_if_not_known() throws Exception {
             Long inboxId = 1L;
             Long id = nextLong();
-            given(messageService.delete(inboxId, id)).willReturn(false);
+            given(messageService.delete(inboxId, id, null)).willReturn(false);
 
             ResultActions actions = mockMvc.perform(delete(PATH_DELETE, inboxId, id));
             actions.andExpect(status().isNotFound());
 
-            verify(messageService, times(1)).delete(inboxId, id);
+            verify(messageService, times(1)).delete(inboxId, id, null);
             verifyNoMoreInteractions(messageService);
         }
     }
 
     private static Message inbox(Long id) {
-        return new Message(id, "name", "description");
+        return new Message(id, "name", "description", 0L);
     }
 
     private static MessageInput inboxInput() {
@@ -19,10 +19,12 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.Cursors.encode;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.hateoas.IanaLinkRelations.NEXT;
 import static org.springframework.hateoas.IanaLinkRelations.SELF;
 import static org.springframework.hateoas.MediaTypes.HAL_FORMS_JSON;
 
@@ -32,10 +34,13 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Affordance;
 import org.springframework.hateoas.AffordanceModel;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 
@@ -145,6 +150,58 @@ public class MessageModelAssemblerTest {
         }
     }
 
+    @Nested
+    class ToMultiModel {
+
+        @Test
+        public void should_return_model_containing_self_link_listing_the_ids() {
+            MessageModelAssembler assembler = messageModelAssembler();
+            MessageProjection message = new MessageProjection(1L, 2L, "name", "description");
+
+            CollectionModel<MessageModel> model = assembler.toMultiModel(1L, newArrayList(message), newArrayList(2L, 3L));
+            assertThat(model.getContent()).hasSize(1);
+            assertThat(model.getLink(SELF).map(Link::getHref))
+                .hasValueSatisfying(href -> assertThat(href).endsWith("/api/inboxes/1/messages?ids=2,3"));
+        }
+
+        @Test
+        public void should_return_items_without_affordances() {
+            MessageModelAssembler assembler = messageModelAssembler();
+            MessageProjection message = new MessageProjection(1L, 2L, "name", "description");
+
+            CollectionModel<MessageModel> model = assembler.toMultiModel(1L, newArrayList(message), newArrayList(2L));
+            MessageModel item = model.getContent().iterator().next();
+            assertThat(item.getRequiredLink(SELF).getAffordances()).isEmpty();
+            assertThat(item.getRequiredLink(SELF).getHref()).endsWith("/api/inboxes/1/messages/2");
+        }
+    }
+
+    @Nested
+    class ToCursorModel {
+
+        @Test
+        public void should_return_model_containing_self_and_next_link_if_more_available() {
+            MessageModelAssembler assembler = messageModelAssembler();
+            MessageProjection message = new MessageProjection(1L, 2L, "name", "description");
+            Slice<MessageProjection> slice = new SliceImpl<>(newArrayList(message), of(0, 1), true);
+
+            CollectionModel<MessageModel> model = assembler.toCursorModel(1L, slice, "");
+            assertThat(model.getContent()).hasSize(1);
+            assertThat(model.getLink(SELF)).isPresent();
+            assertThat(model.getLink(NEXT).map(Link::getHref)).hasValueSatisfying(href -> assertThat(href)
+                .endsWith("/api/inboxes/" + message.getInboxId() + "/messages?after=" + encode(message.getId()) + "&size=1"));
+        }
+
+        @Test
+        public void should_return_model_without_next_link_if_no_more_available() {
+            MessageModelAssembler assembler = messageModelAssembler();
+            MessageProjection message = new MessageProjection(1L, 2L, "name", "description");
+            Slice<MessageProjection> slice = new SliceImpl<>(newArrayList(message), of(0, 1), false);
+
+            assertThat(assembler.toCursorModel(1L, slice, "").getLink(NEXT)).isEmpty();
+        }
+    }
+
     private static MessageModelAssembler messageModelAssembler() {
         return new MessageModelAssembler(new PagedResourcesAssembler<MessageProjection>(null, null),
             new HateoasPageableHandlerMethodArgumentResolver());
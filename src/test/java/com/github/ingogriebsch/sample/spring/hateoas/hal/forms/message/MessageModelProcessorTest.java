@@ -24,6 +24,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
 
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.hateoas.Link;
@@ -35,18 +37,21 @@ public class MessageModelProcessorTest {
 
         @Test
         public void should_throw_exception_if_input_is_null() {
-            assertThrows(NullPointerException.class, () -> new MessageModelProcessor().process(null));
+            assertThrows(NullPointerException.class,
+                () -> new MessageModelProcessor(new PipelineMetrics(new SimpleMeterRegistry())).process(null));
         }
 
         @Test
         public void should_return_enhanced_input() {
             MessageModel messageModel = new MessageModel(1L, 2L, "title", "content");
-            assertThat(new MessageModelProcessor().process(messageModel)).isSameAs(messageModel);
+            assertThat(new MessageModelProcessor(new PipelineMetrics(new SimpleMeterRegistry())).process(messageModel))
+                .isSameAs(messageModel);
         }
 
         @Test
         public void should_return_model_containing_messages_link() {
-            MessageModel messageModel = new MessageModelProcessor().process(new MessageModel(1L, 2L, "name", "description"));
+            MessageModel messageModel = new MessageModelProcessor(new PipelineMetrics(new SimpleMeterRegistry()))
+                .process(new MessageModel(1L, 2L, "name", "description"));
             assertThat(messageModel).isNotNull();
 
             List<Link> links = messageModel.getLinks("parent");
@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
+
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newTreeMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageSearchIndex.Hits;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class MessageSearchIndexTest {
+
+    private static final String[] WORDS = { "report", "invoice", "lunch", "draft", "final", "weekly", "numbers", "noon" };
+
+    @Nested
+    class AddAll {
+
+        @Test
+        public void should_throw_exception_if_messages_are_not_ordered_by_id() {
+            MessageSearchIndex searchIndex = new MessageSearchIndex();
+            assertThrows(IllegalArgumentException.class,
+                () -> searchIndex.addAll(newArrayList(new Message(2L, "report", null, 0L), new Message(1L, "report", null, 0L))));
+        }
+    }
+
+    @Nested
+    class Search {
+
+        @Test
+        public void should_return_nothing_if_nothing_matches() {
+            MessageSearchIndex searchIndex = new MessageSearchIndex();
+            searchIndex.add(new Message(1L, "Report", "Draft", 0L));
+
+            assertThat(searchIndex.search("lunch", 10)).isEqualTo(new Hits(newArrayList(), 0));
+            assertThat(searchIndex.search("  ", 10)).isEqualTo(new Hits(newArrayList(), 0));
+        }
+
+        @Test
+        public void should_rank_like_bm25_across_adds_updates_and_removes() {
+            Random random = new Random(42);
+            MessageSearchIndex searchIndex = new MessageSearchIndex();
+            SortedMap<Long, Message> messages = newTreeMap();
+            long nextId = 1;
+
+            for (int round = 0; round < 200; round++) {
+                int operation = random.nextInt(4);
+                if (operation == 0 || messages.isEmpty()) {
+                    List<Message> batch = newArrayList();
+                    for (int i = random.nextInt(20); i >= 0; i--) {
+                        batch.add(message(nextId++, random));
+                    }
+                    searchIndex.addAll(batch);
+                    batch.forEach(message -> messages.put(message.getId(), message));
+                } else {
+                    Message previous = messages.get(pick(messages, random));
+                    searchIndex.remove(previous);
+                    messages.remove(previous.getId());
+                    if (operation == 1) {
+                        Message updated = message(previous.getId(), random);
+                        searchIndex.add(updated);
+                        messages.put(updated.getId(), updated);
+                    }
+                }
+
+                String query = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+                int limit = random.nextInt(10);
+                assertThat(searchIndex.search(query, limit)).isEqualTo(expected(messages, query, limit));
+            }
+        }
+    }
+
+    private static Message message(long id, Random random) {
+        List<String> words = newArrayList();
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            words.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return new Message(id, WORDS[random.nextInt(WORDS.length)], String.join(" ", words), 0L);
+    }
+
+    private static long pick(SortedMap<Long, Message> messages, Random random) {
+        return messages.keySet().stream().skip(random.nextInt(messages.size())).findFirst().get();
+    }
+
+    private static Hits expected(Map<Long, Message> messages, String query, int limit) {
+        Map<Long, Map<String, Integer>> frequencies = newHashMap();
+        long totalLength = 0;
+        for (Message message : messages.values()) {
+            Map<String, Integer> counts = newHashMap();
+            MessageSearchIndex.tokenize(message.getTitle()).forEach(term -> counts.merge(term, 1, Integer::sum));
+            MessageSearchIndex.tokenize(message.getContent()).forEach(term -> counts.merge(term, 1, Integer::sum));
+            frequencies.put(message.getId(), counts);
+            totalLength += counts.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        double averageLength = max(1.0, (double) totalLength / messages.size());
+        Map<Long, Double> scores = newHashMap();
+        for (String term : MessageSearchIndex.tokenize(query).stream().distinct().collect(toList())) {
+            long matches = frequencies.values().stream().filter(counts -> counts.containsKey(term)).count();
+            double idf = log(1 + (messages.size() - matches + 0.5) / (matches + 0.5));
+            frequencies.forEach((id, counts) -> {
+                if (counts.containsKey(term)) {
+                    int frequency = counts.get(term);
+                    int length = counts.values().stream().mapToInt(Integer::intValue).sum();
+                    scores.merge(id, idf * frequency * (1.2 + 1) / (frequency + 1.2 * (1 - 0.75 + 0.75 * length / averageLength)),
+                        Double::sum);
+                }
+            });
+        }
+
+        List<Long> ids = scores.entrySet().stream()
+            .sorted(comparing(Map.Entry<Long, Double>::getValue).reversed().thenComparing(Map.Entry::getKey)).limit(limit)
+            .map(Map.Entry::getKey).collect(toList());
+        return new Hits(ids, scores.size());
+    }
+
+}
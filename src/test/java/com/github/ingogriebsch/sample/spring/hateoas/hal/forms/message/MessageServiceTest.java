@@ -19,22 +19,49 @@
  */
 package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message;
 
+import static java.util.Collections.nCopies;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
-
+import static java.util.stream.IntStream.range;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService.MESSAGES_GAUGE;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService.SORT_ID;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.message.MessageService.SORT_TITLE;
+import static com.google.common.collect.Lists.reverse;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 import static org.apache.commons.lang3.RandomUtils.nextInt;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.newArrayList;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.data.domain.PageRequest.of;
+import static org.springframework.data.domain.Sort.Direction.DESC;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.VersionConflictException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxDeletedEvent;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxNotFoundException;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.InboxRemoved;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.InMemoryStorage;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.MappedLogStorage;
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage.Mutation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 public class MessageServiceTest {
 
@@ -57,6 +84,136 @@ public class MessageServiceTest {
                 .containsExactlyElementsOf(messageInputs.subList((int) pageable.getOffset(), pageable.getPageSize()).stream()
                     .map(pi -> new Tuple(pi.getTitle(), pi.getContent())).collect(toList()));
         }
+
+        @Test
+        public void should_return_page_sorted_and_filtered_by_title() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message hello = messageService.insert(inboxId, new MessageInput("hello", "a"));
+            Message invoice = messageService.insert(inboxId, new MessageInput("invoice", "b"));
+            Message again = messageService.insert(inboxId, new MessageInput("hello", "c"));
+            messageService.insert(2L, new MessageInput("hello", "d"));
+
+            assertThat(messageService.findAll(inboxId, of(0, 3, Sort.by(DESC, SORT_TITLE))).getContent()).containsExactly(invoice,
+                again, hello);
+            assertThat(messageService.findAll(inboxId, of(0, 2, Sort.by(DESC, SORT_ID))).getContent()).containsExactly(again,
+                invoice);
+
+            Page<Message> page = messageService.findAll(inboxId, "hello", of(0, 10));
+            assertThat(page.getContent()).containsExactly(hello, again);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+
+            messageService.update(inboxId, hello.getId(), new MessageInput("goodbye", "a"));
+            assertThat(messageService.findAll(inboxId, "hello", of(0, 10)).getContent()).extracting("id")
+                .containsExactly(again.getId());
+        }
+
+        @Test
+        public void should_throw_exception_if_sort_is_not_supported() throws Exception {
+            assertThrows(IllegalArgumentException.class, () -> new MessageService().findAll(1L, of(0, 2, Sort.by("content"))));
+        }
+    }
+
+    @Nested
+    class FindAllAfter {
+
+        @Test
+        public void should_return_slice_following_the_given_id() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            List<Message> messages = newArrayList(messageInput(), messageInput(), messageInput()).stream()
+                .map(m -> messageService.insert(inboxId, m)).collect(toList());
+
+            Slice<Message> slice = messageService.findAllAfter(inboxId, messages.get(0).getId(), 5);
+            assertThat(slice.getContent()).containsExactly(messages.get(1), messages.get(2));
+            assertThat(slice.hasNext()).isFalse();
+        }
+
+        @Test
+        public void should_return_empty_slice_if_inbox_is_not_known() throws Exception {
+            Slice<Message> slice = new MessageService().findAllAfter(1L, null, 5);
+            assertThat(slice.getContent()).isEmpty();
+            assertThat(slice.hasNext()).isFalse();
+        }
+    }
+
+    @Nested
+    class FindAllById {
+
+        @Test
+        public void should_return_known_messages_ordered_by_id() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            List<Message> messages = range(0, 5).mapToObj(i -> messageService.insert(inboxId, messageInput())).collect(toList());
+
+            List<Message> found = messageService.findAllById(inboxId,
+                newArrayList(messages.get(3).getId(), messages.get(1).getId(), 4711L, messages.get(3).getId()));
+            assertThat(found).containsExactly(messages.get(1), messages.get(3));
+        }
+
+        @Test
+        public void should_return_empty_list_if_inbox_is_not_known() throws Exception {
+            assertThat(new MessageService().findAllById(1L, newArrayList(1L))).isEmpty();
+        }
+    }
+
+    @Nested
+    class Search {
+
+        @Test
+        public void should_return_matching_messages_ranked_by_relevance() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message weak = messageService.insert(inboxId, new MessageInput("Weekly report", "Numbers of the last week."));
+            Message strong = messageService.insert(inboxId, new MessageInput("Report", "The REPORT you asked for."));
+            messageService.insert(inboxId, new MessageInput("Lunch", "See you at noon."));
+            messageService.insert(2L, new MessageInput("Report", "Another inbox."));
+
+            Page<Message> page = messageService.search(inboxId, "report", of(0, 10));
+            assertThat(page.getContent()).containsExactly(strong, weak);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+
+            page = messageService.search(inboxId, "report", of(1, 1));
+            assertThat(page.getContent()).containsExactly(weak);
+            assertThat(page.getTotalElements()).isEqualTo(2);
+        }
+
+        @Test
+        public void should_page_through_matches_in_rank_order() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            List<Message> messages = range(0, 50)
+                .mapToObj(
+                    i -> messageService.insert(inboxId, new MessageInput("Report", String.join(" ", nCopies(50 - i, "filler")))))
+                .collect(toList());
+            messageService.insert(inboxId, new MessageInput("Lunch", "See you at noon."));
+
+            Page<Message> page = messageService.search(inboxId, "report", of(3, 7));
+            assertThat(page.getContent()).containsExactlyElementsOf(reverse(messages).subList(21, 28));
+            assertThat(page.getTotalElements()).isEqualTo(50);
+        }
+
+        @Test
+        public void should_follow_updates_and_deletes() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message updated = messageService.insert(inboxId, new MessageInput("Report", "Draft"));
+            Message deleted = messageService.insert(inboxId, new MessageInput("Report", "Final"));
+
+            messageService.update(inboxId, updated.getId(), new MessageInput("Invoice", "Draft"));
+            messageService.delete(inboxId, deleted.getId());
+
+            assertThat(messageService.search(inboxId, "report", of(0, 10)).getContent()).isEmpty();
+            assertThat(messageService.search(inboxId, "invoice draft", of(0, 10)).getContent()).extracting("id")
+                .containsExactly(updated.getId());
+        }
+
+        @Test
+        public void should_return_empty_page_if_inbox_is_not_known() throws Exception {
+            Page<Message> page = new MessageService().search(1L, "report", of(0, 10));
+            assertThat(page.getContent()).isEmpty();
+            assertThat(page.getTotalElements()).isEqualTo(0);
+        }
     }
 
     @Nested
@@ -110,6 +267,79 @@ public class MessageServiceTest {
             assertThat(message).isEqualToComparingOnlyGivenFields(messageInput, "title", "content");
         }
 
+        @Test
+        public void should_keep_content_of_stored_message_off_heap() throws Exception {
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(1L, messageInput());
+
+            assertThat(messageService.findOne(1L, message.getId())).hasValueSatisfying(m -> {
+                assertThat(m.isOffHeap()).isTrue();
+                assertThat(m.getContent()).isEqualTo(messageInput().getContent());
+            });
+        }
+
+        @Test
+        public void should_insert_all_messages_under_consecutive_ids() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message single = messageService.insert(inboxId, messageInput());
+
+            List<Message> messages =
+                messageService.insertAll(inboxId, newArrayList(messageInput(), messageInput(), messageInput()));
+
+            assertThat(messages).extracting(Message::getId).containsExactly(single.getId() + 1, single.getId() + 2,
+                single.getId() + 3);
+            assertThat(messageService.findAll(inboxId, of(0, 10)).getContent()).containsExactly(single, messages.get(0),
+                messages.get(1), messages.get(2));
+        }
+
+        @Test
+        public void should_assign_unique_ids_if_called_concurrently() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+
+            ExecutorService executor = newFixedThreadPool(4);
+            range(0, 500).forEach(i -> executor.execute(() -> messageService.insert(inboxId, messageInput())));
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, SECONDS)).isTrue();
+
+            Page<Message> page = messageService.findAll(inboxId, of(0, 500));
+            assertThat(page.getContent()).extracting("id").doesNotHaveDuplicates().hasSize(500);
+        }
+
+        @Test
+        public void should_not_block_writers_of_other_inboxes_while_a_batch_is_logged() throws Exception {
+            CountDownLatch logging = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            MessageService messageService = new MessageService(new InMemoryStorage() {
+
+                @Override
+                public long write(Mutation mutation) {
+                    if (mutation instanceof MessagesSaved && ((MessagesSaved) mutation).getInboxId() == 1L) {
+                        logging.countDown();
+                        awaitUninterruptibly(release);
+                    }
+                    return super.write(mutation);
+                }
+            });
+
+            ExecutorService executor = newFixedThreadPool(1);
+            try {
+                Future<List<Message>> batch = executor
+                    .submit(() -> messageService.insertAll(1L, range(0, 1000).mapToObj(i -> messageInput()).collect(toList())));
+                assertThat(logging.await(10, SECONDS)).isTrue();
+
+                assertThat(messageService.insert(2L, messageInput()).getId()).isEqualTo(1L);
+                assertThat(messageService.update(2L, 1L, messageInput())).isPresent();
+
+                release.countDown();
+                assertThat(batch.get(10, SECONDS)).hasSize(1000);
+            } finally {
+                release.countDown();
+                executor.shutdownNow();
+            }
+        }
+
     }
 
     @Nested
@@ -140,6 +370,31 @@ public class MessageServiceTest {
             assertThat(optional.get()).isEqualToComparingOnlyGivenFields(messageInput, "title", "content");
         }
 
+        @Test
+        public void should_increment_version_of_updated_message() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(inboxId, messageInput());
+            assertThat(message.getVersion()).isEqualTo(0);
+
+            messageService.update(inboxId, message.getId(), messageInput());
+
+            assertThat(messageService.findOne(inboxId, message.getId()))
+                .hasValueSatisfying(m -> assertThat(m.getVersion()).isEqualTo(1));
+        }
+
+        @Test
+        public void should_throw_exception_if_expected_version_does_not_match() throws Exception {
+            Long inboxId = 1L;
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(inboxId, messageInput());
+
+            assertThrows(VersionConflictException.class,
+                () -> messageService.update(inboxId, message.getId(), 1L, messageInput()));
+            assertThrows(VersionConflictException.class, () -> messageService.delete(inboxId, message.getId(), 1L));
+            assertThat(messageService.findOne(inboxId, message.getId())).contains(message);
+        }
+
         @Test
         public void should_return_empty_optional_if_message_is_not_known() throws Exception {
             MessageService messageService = new MessageService();
@@ -180,6 +435,199 @@ public class MessageServiceTest {
             assertThat(optional.isPresent()).isFalse();
         }
 
+        @Test
+        public void should_copy_remaining_messages_out_of_a_sparse_slab_on_the_reclaimer() throws Exception {
+            Long inboxId = 1L;
+            List<Runnable> reclaimer = newArrayList();
+            MessageService messageService = new MessageService(new InMemoryStorage(), reclaimer::add);
+            String content = randomAlphanumeric(40_000);
+            List<Message> messages = messageService.insertAll(inboxId,
+                range(0, 150).mapToObj(i -> new MessageInput("title" + i, content)).collect(toList()));
+
+            ContentSlab slab = messages.get(60).slab();
+            List<Message> inSlab = messages.stream().filter(m -> m.slab() == slab).collect(toList());
+            assertThat(inSlab.size()).isGreaterThan(5);
+            inSlab.subList(5, inSlab.size()).forEach(m -> messageService.delete(inboxId, m.getId()));
+
+            assertThat(messageService.findOne(inboxId, inSlab.get(0).getId()).get().slab()).isSameAs(slab);
+            assertThat(reclaimer).hasSize(1);
+            reclaimer.get(0).run();
+
+            for (Message message : inSlab.subList(0, 5)) {
+                Message moved = messageService.findOne(inboxId, message.getId()).get();
+                assertThat(moved.slab()).isNotSameAs(slab);
+                assertThat(moved).isEqualTo(new Message(message.getId(), message.getTitle(), content, message.getVersion()));
+            }
+            assertThat(messageService.findAll(inboxId, of(0, 200)).getTotalElements()).isEqualTo(150 - inSlab.size() + 5);
+        }
+
+    }
+
+    @Nested
+    class OnInboxDeleted {
+
+        @Test
+        public void should_drop_all_messages_of_the_deleted_inbox_only() throws Exception {
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(1L, messageInput());
+            Message other = messageService.insert(2L, messageInput());
+
+            messageService.onInboxDeleted(new InboxDeletedEvent(1L));
+
+            assertThat(messageService.findOne(1L, message.getId())).isEmpty();
+            assertThat(messageService.findAll(1L, of(0, 10)).getTotalElements()).isEqualTo(0);
+            assertThat(messageService.findOne(2L, other.getId())).contains(other);
+        }
+
+        @Test
+        public void should_keep_the_content_of_different_inboxes_apart() throws Exception {
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(1L, messageInput());
+            Message other = messageService.insert(2L, messageInput());
+
+            assertThat(message.slab()).isNotSameAs(other.slab());
+            messageService.onInboxDeleted(new InboxDeletedEvent(1L));
+            assertThat(messageService.findOne(2L, other.getId()).get().getContent()).isEqualTo(other.getContent());
+        }
+
+        @Test
+        public void should_reject_writes_into_the_deleted_inbox() throws Exception {
+            MessageService messageService = new MessageService();
+            Message message = messageService.insert(1L, messageInput());
+
+            messageService.onInboxDeleted(new InboxDeletedEvent(1L));
+            messageService.onInboxDeleted(new InboxDeletedEvent(2L));
+
+            assertThrows(InboxNotFoundException.class, () -> messageService.insert(1L, messageInput()));
+            assertThrows(InboxNotFoundException.class, () -> messageService.insertAll(2L, newArrayList(messageInput())));
+            assertThat(messageService.update(1L, message.getId(), messageInput())).isEmpty();
+            assertThat(messageService.delete(1L, message.getId())).isFalse();
+            assertThat(messageService.findAll(1L, of(0, 10)).getTotalElements()).isEqualTo(0);
+            assertThat(messageService.findAll(2L, of(0, 10)).getTotalElements()).isEqualTo(0);
+        }
+    }
+
+    @Nested
+    class BindTo {
+
+        @Test
+        public void should_expose_the_message_count_per_inbox_until_the_inbox_is_deleted() throws Exception {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            MessageService messageService = new MessageService();
+            messageService.insert(1L, messageInput());
+            messageService.bindTo(meterRegistry);
+            messageService.insert(1L, messageInput());
+            messageService.insert(2L, messageInput());
+
+            assertThat(meterRegistry.get(MESSAGES_GAUGE).tag("inbox", "1").gauge().value()).isEqualTo(2);
+            assertThat(meterRegistry.get(MESSAGES_GAUGE).tag("inbox", "2").gauge().value()).isEqualTo(1);
+
+            messageService.onInboxDeleted(new InboxDeletedEvent(1L));
+
+            assertThat(meterRegistry.find(MESSAGES_GAUGE).tag("inbox", "1").gauge()).isNull();
+        }
+    }
+
+    @Nested
+    class Recover {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        public void should_restore_messages_per_inbox_and_continue_ids_from_storage() throws Exception {
+            Message updated;
+            List<Message> batch;
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                MessageService messageService = new MessageService(storage);
+                Message message = messageService.insert(1L, messageInput());
+                updated = messageService.update(1L, message.getId(), new MessageInput("other", "other")).get();
+                batch = messageService.insertAll(2L, newArrayList(messageInput(), messageInput()));
+                messageService.delete(2L, batch.get(1).getId());
+                messageService.insert(3L, messageInput());
+                storage.append(new InboxRemoved(3L));
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                MessageService messageService = new MessageService(storage);
+
+                assertThat(messageService.findAll(1L, of(0, 10)).getContent()).containsExactly(updated);
+                assertThat(messageService.findAll(2L, of(0, 10)).getContent()).containsExactly(batch.get(0));
+                assertThat(messageService.findAll(3L, of(0, 10)).getContent()).isEmpty();
+                assertThat(messageService.insert(2L, messageInput()).getId()).isGreaterThan(batch.get(1).getId());
+            }
+        }
+
+        @Test
+        public void should_restore_messages_from_checkpoint_and_log_tail() throws Exception {
+            Message checkpointed;
+            Message updated;
+            Message deleted;
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                MessageService messageService = new MessageService(storage);
+                checkpointed = messageService.insert(1L, messageInput());
+                Message message = messageService.insert(2L, messageInput());
+                deleted = messageService.insert(2L, messageInput());
+                storage.checkpoint(newArrayList(messageService));
+
+                updated = messageService.update(2L, message.getId(), new MessageInput("other", "other")).get();
+                messageService.delete(2L, deleted.getId());
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                MessageService messageService = new MessageService(storage);
+
+                assertThat(messageService.findAll(1L, of(0, 10)).getContent()).containsExactly(checkpointed);
+                assertThat(messageService.findAll(2L, of(0, 10)).getContent()).containsExactly(updated);
+                assertThat(messageService.insert(2L, messageInput()).getId()).isGreaterThan(deleted.getId());
+            }
+        }
+
+        @Test
+        public void should_ignore_messages_logged_after_their_inbox_was_removed() throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                Message message = new MessageService(storage).insert(1L, messageInput());
+                storage.append(new InboxRemoved(1L));
+                storage.append(new MessagesSaved(1L, newArrayList(message)));
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                MessageService messageService = new MessageService(storage);
+
+                assertThat(messageService.findAll(1L, of(0, 10)).getTotalElements()).isEqualTo(0);
+                assertThrows(InboxNotFoundException.class, () -> messageService.insert(1L, messageInput()));
+            }
+        }
+
+        @Test
+        public void should_divide_batch_which_does_not_fit_into_a_segment() throws Exception {
+            List<MessageInput> messageInputs = range(0, 200).mapToObj(i -> messageInput()).collect(toList());
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                assertThat(new MessageService(storage).insertAll(1L, messageInputs)).hasSize(200);
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                assertThat(new MessageService(storage).findAll(1L, of(0, 10)).getTotalElements()).isEqualTo(200);
+            }
+        }
+
+        @Test
+        public void should_not_publish_changes_the_storage_rejects() throws Exception {
+            MappedLogStorage storage = new MappedLogStorage(directory, 4096);
+            MessageService messageService = new MessageService(storage);
+            Message message = messageService.insert(1L, messageInput());
+            storage.close();
+
+            assertThrows(IllegalStateException.class, () -> messageService.insert(1L, messageInput()));
+            assertThrows(IllegalStateException.class, () -> messageService.insertAll(1L, newArrayList(messageInput())));
+            assertThrows(IllegalStateException.class,
+                () -> messageService.update(1L, message.getId(), new MessageInput("other", "other")));
+            assertThrows(IllegalStateException.class, () -> messageService.delete(1L, message.getId()));
+
+            assertThat(messageService.findAll(1L, of(0, 10)).getContent()).containsExactly(message);
+            assertThat(messageService.findAll(1L, "other", of(0, 10)).getContent()).isEmpty();
+            assertThat(messageService.search(1L, "other", of(0, 10)).getContent()).isEmpty();
+        }
     }
 
     private static MessageInput messageInput() {
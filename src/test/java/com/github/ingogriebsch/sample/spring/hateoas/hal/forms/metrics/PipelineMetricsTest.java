@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toMap;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics.NOT_MODIFIED;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics.PAGE_ELEMENTS;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics.STAGE_TIMER;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.LOOKUP;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.PROCESSING;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import com.google.common.base.Splitter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class PipelineMetricsTest {
+
+    @Nested
+    class Record {
+
+        @Test
+        public void should_throw_exception_if_called_with_null() {
+            assertThrows(NullPointerException.class,
+                () -> new PipelineMetrics(new SimpleMeterRegistry()).record(null, null, null));
+        }
+
+        @Test
+        public void should_return_result_and_time_the_stage_per_resource() {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            PipelineMetrics pipelineMetrics = new PipelineMetrics(meterRegistry);
+
+            assertThat(pipelineMetrics.record("messages", LOOKUP, () -> "result")).isEqualTo("result");
+            pipelineMetrics.record("messages", LOOKUP, () -> "result");
+            pipelineMetrics.record("inboxes", PROCESSING, () -> "result");
+
+            assertThat(meterRegistry.get(STAGE_TIMER).tags("resource", "messages", "stage", "lookup").timer().count())
+                .isEqualTo(2);
+            assertThat(meterRegistry.get(STAGE_TIMER).tags("resource", "inboxes", "stage", "processing").timer().count())
+                .isEqualTo(1);
+            assertThat(meterRegistry.find(STAGE_TIMER).tags("resource", "inboxes", "stage", "lookup").timer().count())
+                .isEqualTo(0);
+        }
+
+        @Test
+        public void should_not_report_a_nested_stage_as_part_of_the_outer_one() {
+            PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+            ServerTiming serverTiming = ServerTiming.start();
+            try {
+                pipelineMetrics.record("messages", LOOKUP, () -> {
+                    sleepUninterruptibly(10, MILLISECONDS);
+                    return pipelineMetrics.record("messages", PROCESSING, () -> {
+                        sleepUninterruptibly(100, MILLISECONDS);
+                        return "result";
+                    });
+                });
+
+                Map<String, Double> durations = Splitter.on(", ").withKeyValueSeparator(";dur=").split(serverTiming.header())
+                    .entrySet().stream().collect(toMap(Map.Entry::getKey, e -> Double.valueOf(e.getValue())));
+                assertThat(durations.get("processing")).isGreaterThanOrEqualTo(100);
+                assertThat(durations.get("lookup")).isGreaterThanOrEqualTo(10).isLessThan(100);
+            } finally {
+                ServerTiming.stop();
+            }
+        }
+    }
+
+    @Nested
+    class RecordPage {
+
+        @Test
+        public void should_summarize_page_elements_per_resource() {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            PipelineMetrics pipelineMetrics = new PipelineMetrics(meterRegistry);
+
+            pipelineMetrics.recordPage("messages", 20);
+            pipelineMetrics.recordPage("messages", 5);
+
+            assertThat(meterRegistry.get(PAGE_ELEMENTS).tag("resource", "messages").summary().totalAmount()).isEqualTo(25);
+        }
+    }
+
+    @Nested
+    class RecordNotModified {
+
+        @Test
+        public void should_count_per_resource() {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            new PipelineMetrics(meterRegistry).recordNotModified("inboxes");
+
+            assertThat(meterRegistry.get(NOT_MODIFIED).tag("resource", "inboxes").counter().count()).isEqualTo(1);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.ServerTimingFilter.HEADER_OPT_IN;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.ServerTimingFilter.HEADER_SERVER_TIMING;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.ServerTimingFilter.PARAM_OPT_IN;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.Stage.LOOKUP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ServerTimingFilterTest {
+
+    @Nested
+    class DoFilter {
+
+        @Test
+        public void should_not_add_header_if_not_opted_in() throws Exception {
+            MockHttpServletResponse response = filter(new MockHttpServletRequest());
+
+            assertThat(response.getHeader(HEADER_SERVER_TIMING)).isNull();
+            assertThat(response.getContentAsString()).isEqualTo("body");
+            assertThat(ServerTiming.current()).isNull();
+        }
+
+        @Test
+        public void should_add_header_with_stage_durations_if_opted_in_through_header() throws Exception {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader(HEADER_OPT_IN, "true");
+
+            MockHttpServletResponse response = filter(request);
+
+            assertThat(response.getHeader(HEADER_SERVER_TIMING)).matches("lookup;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}");
+            assertThat(response.getContentAsString()).isEqualTo("body");
+            assertThat(ServerTiming.current()).isNull();
+        }
+
+        @Test
+        public void should_add_header_if_opted_in_through_parameter() throws Exception {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setParameter(PARAM_OPT_IN, "");
+
+            MockHttpServletResponse response = filter(request);
+
+            assertThat(response.getHeader(HEADER_SERVER_TIMING)).startsWith("lookup;dur=");
+        }
+
+        private MockHttpServletResponse filter(MockHttpServletRequest request) throws Exception {
+            PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+            HttpServlet servlet = new HttpServlet() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+                    pipelineMetrics.record("resource", LOOKUP, () -> "result");
+                    resp.getWriter().write("body");
+                }
+            };
+
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            new ServerTimingFilter().doFilter(request, response, new MockFilterChain(servlet));
+            return response;
+        }
+    }
+
+}
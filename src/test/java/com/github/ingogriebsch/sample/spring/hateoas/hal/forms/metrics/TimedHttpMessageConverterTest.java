@@ -0,0 +1,73 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics;
+
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics.SERIALIZATION_BYTES;
+import static com.github.ingogriebsch.sample.spring.hateoas.hal.forms.metrics.PipelineMetrics.SERIALIZATION_TIMER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+public class TimedHttpMessageConverterTest {
+
+    @Nested
+    class Write {
+
+        @Test
+        public void should_write_through_the_delegate_and_record_time_and_bytes() throws Exception {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            TimedHttpMessageConverter converter =
+                new TimedHttpMessageConverter(new MappingJackson2HttpMessageConverter(), new PipelineMetrics(meterRegistry));
+
+            MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+            converter.write(ImmutableMap.of("name", "value"), Map.class, APPLICATION_JSON, outputMessage);
+
+            assertThat(outputMessage.getBodyAsString()).isEqualTo("{\"name\":\"value\"}");
+            assertThat(outputMessage.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
+            assertThat(meterRegistry.get(SERIALIZATION_TIMER).tag("media.type", "application/json").timer().count()).isEqualTo(1);
+            assertThat(meterRegistry.get(SERIALIZATION_BYTES).tag("media.type", "application/json").summary().totalAmount())
+                .isEqualTo(outputMessage.getBodyAsBytes().length);
+        }
+    }
+
+    @Nested
+    class CanWrite {
+
+        @Test
+        public void should_answer_like_the_delegate() {
+            MappingJackson2HttpMessageConverter delegate = new MappingJackson2HttpMessageConverter();
+            TimedHttpMessageConverter converter =
+                new TimedHttpMessageConverter(delegate, new PipelineMetrics(new SimpleMeterRegistry()));
+
+            assertThat(converter.canWrite(Map.class, APPLICATION_JSON)).isTrue();
+            assertThat(converter.getSupportedMediaTypes()).isEqualTo(delegate.getSupportedMediaTypes());
+        }
+    }
+
+}
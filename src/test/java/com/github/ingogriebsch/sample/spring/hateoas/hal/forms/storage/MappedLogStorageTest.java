@@ -0,0 +1,280 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedLogStorageTest {
+
+    @Nested
+    class Append {
+
+        @Test
+        public void should_throw_exception_if_called_with_null(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 1024)) {
+                assertThrows(NullPointerException.class, () -> storage.append(null));
+            }
+        }
+
+        @Test
+        public void should_throw_exception_if_mutation_does_not_fit_into_segment(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 64)) {
+                assertThrows(IllegalArgumentException.class, () -> storage.append(new Note(1L, "abcdefghijklmnopqrstuvwxyz")));
+            }
+        }
+
+        @Test
+        public void should_throw_exception_if_already_closed(@TempDir Path directory) throws Exception {
+            MappedLogStorage storage = new MappedLogStorage(directory, 1024);
+            storage.close();
+
+            assertThrows(IllegalStateException.class, () -> storage.append(new Note(1L, "a")));
+        }
+
+        @Test
+        public void should_roll_segment_if_current_one_is_full(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 256)) {
+                range(0, 10).forEach(i -> storage.append(new Note((long) i, "note")));
+            }
+
+            try (Stream<Path> segments = Files.list(directory)) {
+                assertThat(segments.count()).isGreaterThan(1);
+            }
+        }
+
+        @Test
+        public void should_keep_all_mutations_of_concurrent_writers(@TempDir Path directory) throws Exception {
+            ExecutorService executor = newFixedThreadPool(8);
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                range(0, 1000).forEach(i -> executor.execute(() -> storage.append(new Note((long) i, "note"))));
+                executor.shutdown();
+                assertThat(executor.awaitTermination(30, SECONDS)).isTrue();
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                List<Mutation> mutations = newArrayList();
+                storage.replay(0L, mutations::add);
+                assertThat(mutations.stream().map(m -> ((Note) m).getId()).sorted().collect(toList()))
+                    .isEqualTo(range(0, 1000).mapToObj(Long::valueOf).collect(toList()));
+            }
+        }
+    }
+
+    @Nested
+    class Replay {
+
+        @Test
+        public void should_return_nothing_if_log_is_empty(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 1024)) {
+                List<Mutation> mutations = newArrayList();
+                storage.replay(0L, mutations::add);
+                assertThat(mutations).isEmpty();
+            }
+        }
+
+        @Test
+        public void should_return_mutations_in_order_of_appending_across_segments_and_reopening(@TempDir Path directory)
+            throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 256)) {
+                range(0, 5).forEach(i -> storage.append(new Note((long) i, "note")));
+            }
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 256)) {
+                range(5, 10).forEach(i -> storage.append(new Note((long) i, "note")));
+
+                List<Mutation> mutations = newArrayList();
+                storage.replay(0L, mutations::add);
+                assertThat(mutations)
+                    .containsExactlyElementsOf(range(0, 10).mapToObj(i -> new Note((long) i, "note")).collect(toList()));
+            }
+        }
+
+        @Test
+        public void should_ignore_and_overwrite_torn_frame_at_the_tail(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 1024)) {
+                storage.append(new Note(1L, "a"));
+                storage.append(new Note(2L, "b"));
+            }
+
+            Path segment;
+            try (Stream<Path> segments = Files.list(directory)) {
+                segment = segments.findFirst().get();
+            }
+            try (FileChannel channel = FileChannel.open(segment, READ, WRITE)) {
+                long end = 0;
+                ByteBuffer header = ByteBuffer.allocate(4);
+                for (int i = 0; i < 2; i++) {
+                    header.clear();
+                    channel.read(header, end);
+                    header.flip();
+                    end += 8 + header.getInt();
+                }
+                channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 42, 1, 2, 3, 4, 5 }), end);
+            }
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 1024)) {
+                storage.append(new Note(3L, "c"));
+
+                List<Mutation> mutations = newArrayList();
+                storage.replay(0L, mutations::add);
+                assertThat(mutations).containsExactly(new Note(1L, "a"), new Note(2L, "b"), new Note(3L, "c"));
+            }
+        }
+    }
+
+    @Nested
+    class Checkpoint {
+
+        @Test
+        public void should_restore_sections_and_replay_only_the_tail(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                storage.append(new Note(1L, "a"));
+                storage.checkpoint(newArrayList(new Section("notes", "checkpointed")));
+                storage.append(new Note(2L, "b"));
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                List<String> restored = newArrayList();
+                long position = storage.restore("notes", input -> restored.add(input.readString()));
+                storage.restore("unknown", input -> restored.add("unknown"));
+                assertThat(restored).containsExactly("checkpointed");
+
+                List<Mutation> mutations = newArrayList();
+                storage.replay(position, mutations::add);
+                assertThat(mutations).containsExactly(new Note(2L, "b"));
+            }
+        }
+
+        @Test
+        public void should_not_cover_mutations_written_but_not_published_yet(@TempDir Path directory) throws Exception {
+            ExecutorService executor = newFixedThreadPool(1);
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                AtomicReference<String> state = new AtomicReference<>("written");
+                long position = storage.write(new Note(1L, "a"));
+                storage.sync(position);
+
+                Future<?> checkpoint = executor.submit(() -> storage.checkpoint(newArrayList(new Section("notes", state::get))));
+                assertThrows(TimeoutException.class, () -> checkpoint.get(200, MILLISECONDS));
+
+                state.set("published");
+                storage.published(position);
+                checkpoint.get(10, SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 4096)) {
+                List<String> restored = newArrayList();
+                long position = storage.restore("notes", input -> restored.add(input.readString()));
+                assertThat(restored).containsExactly("published");
+
+                List<Mutation> mutations = newArrayList();
+                storage.replay(position, mutations::add);
+                assertThat(mutations).isEmpty();
+            }
+        }
+
+        @Test
+        public void should_delete_segments_and_checkpoints_covered_by_newer_checkpoint(@TempDir Path directory) throws Exception {
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 256)) {
+                range(0, 10).forEach(i -> storage.append(new Note((long) i, "note")));
+                storage.checkpoint(newArrayList(new Section("notes", "first")));
+                storage.append(new Note(10L, "note"));
+                storage.checkpoint(newArrayList(new Section("notes", "second")));
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".bin")).count()).isEqualTo(1);
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".log")).count()).isEqualTo(1);
+            }
+
+            try (MappedLogStorage storage = new MappedLogStorage(directory, 256)) {
+                List<String> restored = newArrayList();
+                long position = storage.restore("notes", input -> restored.add(input.readString()));
+                assertThat(restored).containsExactly("second");
+
+                List<Mutation> mutations = newArrayList();
+                storage.replay(position, mutations::add);
+                assertThat(mutations).isEmpty();
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    static class Section implements Checkpointable {
+
+        private final String name;
+        private final Supplier<String> value;
+
+        Section(String name, String value) {
+            this(name, () -> value);
+        }
+
+        @Override
+        public String getCheckpointName() {
+            return name;
+        }
+
+        @Override
+        public void writeCheckpoint(CheckpointOutput output) throws IOException {
+            output.writeString(value.get());
+        }
+    }
+
+    @AllArgsConstructor
+    @Data
+    @NoArgsConstructor
+    static class Note implements Mutation {
+
+        private Long id;
+        private String text;
+    }
+
+}
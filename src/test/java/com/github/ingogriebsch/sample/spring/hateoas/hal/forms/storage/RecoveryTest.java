@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * Spring HATEOAS HAL-FORMS sample
+ * %%
+ * Copyright (C) 2018 - 2019 Ingo Griebsch
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.ingogriebsch.sample.spring.hateoas.hal.forms.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.ingogriebsch.sample.spring.hateoas.hal.forms.inbox.Inbox;
+import org.junit.jupiter.api.Test;
+
+public class RecoveryTest {
+
+    @Test
+    public void should_keep_highest_version_regardless_of_order() {
+        Recovery<Inbox> recovery = new Recovery<>();
+        recovery.saved(new Inbox(1L, "b", "b", 1L));
+        recovery.saved(new Inbox(1L, "a", "a", 0L));
+        recovery.saved(new Inbox(2L, "c", "c", 0L));
+
+        assertThat(recovery.values()).containsExactly(new Inbox(1L, "b", "b", 1L), new Inbox(2L, "c", "c", 0L));
+    }
+
+    @Test
+    public void should_not_resurrect_removed_entities() {
+        Recovery<Inbox> recovery = new Recovery<>();
+        recovery.saved(new Inbox(1L, "a", "a", 0L));
+        recovery.removed(1L);
+        recovery.saved(new Inbox(1L, "b", "b", 1L));
+
+        assertThat(recovery.values()).isEmpty();
+    }
+
+    @Test
+    public void should_merge_restored_entities_with_replayed_changes() {
+        Recovery<Inbox> recovery = new Recovery<>();
+        recovery.restored(new Inbox(1L, "a", "a", 0L));
+        recovery.restored(new Inbox(3L, "c", "c", 2L));
+        recovery.restored(new Inbox(5L, "e", "e", 0L));
+
+        recovery.saved(new Inbox(3L, "stale", "stale", 1L));
+        recovery.saved(new Inbox(4L, "d", "d", 0L));
+        recovery.saved(new Inbox(5L, "f", "f", 1L));
+        recovery.removed(1L);
+
+        assertThat(recovery.values()).containsExactly(new Inbox(3L, "c", "c", 2L), new Inbox(4L, "d", "d", 0L),
+            new Inbox(5L, "f", "f", 1L));
+    }
+
+    @Test
+    public void should_track_highest_id_including_removed_ones() {
+        Recovery<Inbox> recovery = new Recovery<>();
+        recovery.saved(new Inbox(3L, "a", "a", 0L));
+        recovery.removed(7L);
+
+        assertThat(recovery.maxId()).isEqualTo(7L);
+    }
+
+}